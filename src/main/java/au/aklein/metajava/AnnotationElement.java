@@ -17,23 +17,50 @@
 package au.aklein.metajava;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * An object representing an annotation on a type, method or field.
+ *
+ * Annotations read from a class file also hold the values of the elements written in the annotation, available
+ * through {@link #getValue(String)} and the typed accessors. Elements left at their default value are not stored
+ * in the class file, so have no value here.
  */
 public final class AnnotationElement implements Element {
 
     private final String annotationClass;
     private final boolean paramaterAnnotation;
+    private final Map<String, Object> values;
+    private final int hash;
 
     public AnnotationElement(String annotationClass) {
+        this(annotationClass, Collections.emptyMap());
+    }
+
+    /**
+     * Creates an annotation with element values.
+     * @param annotationClass - the internal name of the annotation type
+     * @param values - the element values, as described by {@link #getValue(String)}
+     */
+    public AnnotationElement(String annotationClass, Map<String, Object> values) {
         this.annotationClass = annotationClass;
         this.paramaterAnnotation = false;
+        this.values = Collections.unmodifiableMap(values);
+        this.hash = ElementHash.mix(annotationClass.hashCode());
     }
 
+    /**
+     * Returns the annotation type after loading it with the specified {@link ClassLoader}. Loaded types are cached
+     * per class loader.
+     * @param classloader - The ClassLoader to load the annotation type with
+     * @return - The annotation type
+     * @throws ClassNotFoundException if the annotation type cannot be loaded
+     */
     public Class<?> getType(ClassLoader classloader) throws ClassNotFoundException {
-        return classloader.loadClass(annotationClass);
+        return ReflectionCache.loadClass(classloader, annotationClass.replace('/', '.'));
     }
 
     public boolean isParamaterAnnotation() {
@@ -45,6 +72,143 @@ public final class AnnotationElement implements Element {
         return annotationClass;
     }
 
+    /**
+     * Gets the names of the elements which have a value in the annotation.
+     * @return - A set of element names
+     */
+    public Set<String> getValueNames() {
+        return values.keySet();
+    }
+
+    /**
+     * Gets the value of an annotation element. Primitive values are boxed, strings are returned as Strings, enum
+     * constants as {@link EnumValue}, classes as {@link TypeValue}, nested annotations as AnnotationElements and
+     * arrays as lists of these values.
+     * @param name - The name of the annotation element
+     * @return - The value, or null if the element has no value in the class file
+     */
+    public Object getValue(String name) {
+        return values.get(name);
+    }
+
+    /**
+     * Gets the value of a String annotation element.
+     * @param name - The name of the annotation element
+     * @return - The value, or null if the element has no value or is not a String. A String array holding a
+     * single value returns that value.
+     */
+    public String getString(String name) {
+        Object value = single(values.get(name));
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * Gets the values of a String or String array annotation element.
+     * @param name - The name of the annotation element
+     * @return - The values, or an empty list if the element has no value
+     */
+    public List<String> getStrings(String name) {
+        List<String> strings = new ArrayList<>();
+        for(Object value : getValues(name)) {
+            if(value instanceof String) strings.add((String) value);
+        }
+        return strings;
+    }
+
+    /**
+     * Gets the value of an int, short, byte or char annotation element.
+     * @param name - The name of the annotation element
+     * @param defaultValue - The value to return if the element has no value
+     * @return - The value
+     */
+    public int getInt(String name, int defaultValue) {
+        Object value = single(values.get(name));
+        if(value instanceof Character) return (Character) value;
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    /**
+     * Gets the value of a numeric annotation element as a long.
+     * @param name - The name of the annotation element
+     * @param defaultValue - The value to return if the element has no value
+     * @return - The value
+     */
+    public long getLong(String name, long defaultValue) {
+        Object value = single(values.get(name));
+        return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+    }
+
+    /**
+     * Gets the value of a numeric annotation element as a double.
+     * @param name - The name of the annotation element
+     * @param defaultValue - The value to return if the element has no value
+     * @return - The value
+     */
+    public double getDouble(String name, double defaultValue) {
+        Object value = single(values.get(name));
+        return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+    }
+
+    /**
+     * Gets the value of a boolean annotation element.
+     * @param name - The name of the annotation element
+     * @param defaultValue - The value to return if the element has no value
+     * @return - The value
+     */
+    public boolean getBoolean(String name, boolean defaultValue) {
+        Object value = single(values.get(name));
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    /**
+     * Gets the value of an enum annotation element.
+     * @param name - The name of the annotation element
+     * @return - The enum constant, or null if the element has no value
+     */
+    public EnumValue getEnum(String name) {
+        Object value = single(values.get(name));
+        return value instanceof EnumValue ? (EnumValue) value : null;
+    }
+
+    /**
+     * Gets the value of a Class annotation element, without loading the class.
+     * @param name - The name of the annotation element
+     * @return - The class, or null if the element has no value
+     */
+    public TypeValue getTypeValue(String name) {
+        Object value = single(values.get(name));
+        return value instanceof TypeValue ? (TypeValue) value : null;
+    }
+
+    /**
+     * Gets the value of a nested annotation element.
+     * @param name - The name of the annotation element
+     * @return - The nested annotation, or null if the element has no value
+     */
+    public AnnotationElement getAnnotation(String name) {
+        Object value = single(values.get(name));
+        return value instanceof AnnotationElement ? (AnnotationElement) value : null;
+    }
+
+    /**
+     * Gets the values of an annotation element as a list. Array elements return their values, and other elements
+     * return a list holding their single value.
+     * @param name - The name of the annotation element
+     * @return - The values, or an empty list if the element has no value
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object> getValues(String name) {
+        Object value = values.get(name);
+        if(value == null) return Collections.emptyList();
+        if(value instanceof List) return (List<Object>) value;
+        return Collections.singletonList(value);
+    }
+
+    private static Object single(Object value) {
+        if(value instanceof List && ((List) value).size() == 1) return ((List) value).get(0);
+        return value;
+    }
+
     @Override
     public boolean has(Element element) {
         return false;
@@ -58,26 +222,123 @@ public final class AnnotationElement implements Element {
     @Override
     @SuppressWarnings("unchecked")
     public <T extends Element> List<T> getAssociated(ElementType returnType) {
-        switch (returnType) {
-            default:
-                final List<T> elements = new ArrayList<>();
-                elements.add((T) this);
-                return elements;
-        }
+        return Collections.singletonList((T) this);
+    }
+
+    @Override
+    public boolean forEachAssociated(ElementType returnType, ElementVisitor visitor) {
+        return visitor.visit(this);
     }
 
     @Override
     public int hashCode() {
-        return 31*annotationClass.hashCode();
+        return hash;
     }
 
+    /**
+     * Annotations are equal when they are of the same annotation type, whatever their values, so that an annotation
+     * created for comparison finds every use of its type.
+     */
     @Override
     public boolean equals(Object other) {
         if(other == this) return true;
         if(!(other instanceof AnnotationElement)) return false;
-        return this.annotationClass.equals(((AnnotationElement) other).getName());
+        AnnotationElement annotation = (AnnotationElement) other;
+        return hash == annotation.hash && annotationClass.equals(annotation.annotationClass);
     }
 
 
 
+    /**
+     * The value of an enum annotation element.
+     */
+    public static final class EnumValue {
+        private final String typeName;
+        private final String constantName;
+
+        public EnumValue(String typeName, String constantName) {
+            this.typeName = typeName;
+            this.constantName = constantName;
+        }
+
+        /**
+         * Gets the internal name of the enum type.
+         * @return - The type name, delimited by forward slashes
+         */
+        public String getTypeName() {
+            return typeName;
+        }
+
+        /**
+         * Gets the name of the enum constant.
+         * @return - The constant name
+         */
+        public String getConstantName() {
+            return constantName;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31*typeName.hashCode() + constantName.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(other == this) return true;
+            if(!(other instanceof EnumValue)) return false;
+            return typeName.equals(((EnumValue) other).typeName) &&
+                   constantName.equals(((EnumValue) other).constantName);
+        }
+
+        @Override
+        public String toString() {
+            return constantName;
+        }
+    }
+
+    /**
+     * The value of a Class annotation element.
+     */
+    public static final class TypeValue {
+        private final String descriptor;
+
+        public TypeValue(String descriptor) {
+            this.descriptor = descriptor;
+        }
+
+        /**
+         * Gets the field descriptor of the class, such as <code>Ljava/lang/String;</code> or <code>I</code>.
+         * @return - The descriptor
+         */
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        /**
+         * Gets the internal name of the class. Primitive and array classes are named by their descriptor.
+         * @return - The class name, delimited by forward slashes
+         */
+        public String getTypeName() {
+            if(descriptor.startsWith("L") && descriptor.endsWith(";")) {
+                return descriptor.substring(1, descriptor.length()-1);
+            }
+            return descriptor;
+        }
+
+        @Override
+        public int hashCode() {
+            return descriptor.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(other == this) return true;
+            return other instanceof TypeValue && descriptor.equals(((TypeValue) other).descriptor);
+        }
+
+        @Override
+        public String toString() {
+            return getTypeName();
+        }
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import au.aklein.metajava.exception.ClassPathException;
+import au.aklein.metajava.internal.ClassFileReader;
+import au.aklein.metajava.internal.PathProvider;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Meta-annotation relationships between the annotation types used by the elements of an
+ * {@link au.aklein.metajava.ElementIndex}.
+ *
+ * The annotations present on an annotation type are taken from the scan when the annotation type was scanned, and
+ * otherwise read on demand from its class file on the class path, without loading the class. For each annotation
+ * type queried, the set of annotation types which carry it directly or through other meta-annotations is computed
+ * once and cached.
+ */
+final class AnnotationHierarchy {
+    private final ElementIndex index;
+    private final Map<String, List<String>> metaAnnotations;
+    private final Map<String, Set<String>> metaClosures;
+    private final Map<String, List<String>> annotatedClosures;
+
+    private AnnotationHierarchy(ElementIndex index) {
+        this.index = index;
+        this.metaAnnotations = new ConcurrentHashMap<>();
+        this.metaClosures = new ConcurrentHashMap<>();
+        this.annotatedClosures = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Build the meta-annotation hierarchy for the annotations used by an index.
+     * @param index - the element index
+     * @return a new AnnotationHierarchy
+     */
+    static AnnotationHierarchy newAnnotationHierarchy(ElementIndex index) {
+        return new AnnotationHierarchy(index);
+    }
+
+    /**
+     * Gets the annotation types used on elements of the given type which are the given annotation type, or are
+     * annotated with it directly or transitively. Only the annotations of the given type of element are considered,
+     * so a query on types does not read the members of the scanned classes.
+     * @param type - the type of element carrying the annotations
+     * @param annotationName - the internal name of the annotation type
+     * @return the internal names of the annotation types, starting with the given type
+     */
+    List<String> getAnnotatedWith(ElementType type, String annotationName) {
+        return annotatedClosures.computeIfAbsent(type + " " + annotationName, key -> {
+            List<String> annotated = new ArrayList<>();
+            annotated.add(annotationName);
+            for(String candidate : index.getAnnotationNames(type)) {
+                if(!candidate.equals(annotationName) && getMetaAnnotations(candidate).contains(annotationName)) {
+                    annotated.add(candidate);
+                }
+            }
+            return Collections.unmodifiableList(annotated);
+        });
+    }
+
+    /**
+     * Gets the annotations present on an annotation type, directly or through other meta-annotations.
+     * @param annotationName - the internal name of the annotation type
+     * @return the internal names of the meta-annotations
+     */
+    Set<String> getMetaAnnotations(String annotationName) {
+        Set<String> closure = metaClosures.get(annotationName);
+        if(closure != null) return closure;
+
+        closure = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>(getDirectMetaAnnotations(annotationName));
+        while(!pending.isEmpty()) {
+            String next = pending.pop();
+            if(closure.add(next)) pending.addAll(getDirectMetaAnnotations(next));
+        }
+        closure = Collections.unmodifiableSet(closure);
+        metaClosures.putIfAbsent(annotationName, closure);
+        return closure;
+    }
+
+    private List<String> getDirectMetaAnnotations(String annotationName) {
+        return metaAnnotations.computeIfAbsent(annotationName, name -> {
+            int id = index.getNames().getType(name);
+            List<AnnotationElement> annotations = id >= 0 ? index.getType(id).getAnnotations() : readAnnotations(name);
+
+            List<String> names = new ArrayList<>(annotations.size());
+            for(AnnotationElement annotation : annotations) {
+                names.add(annotation.getName());
+            }
+            return names;
+        });
+    }
+
+    private static List<AnnotationElement> readAnnotations(String annotationName) {
+        List<AnnotationElement> annotations;
+        try {
+            annotations = PathProvider.readClassResource(annotationName, path -> {
+                ClassFileReader classFile = ClassFileReader.newClassFileReader();
+                if(!classFile.readClassFile(path, false)) return null;
+                return classFile.generateClassElementBuilder().construct().getAnnotations();
+            });
+        } catch (ClassPathException e) {
+            annotations = null;
+        }
+        return annotations == null ? Collections.emptyList() : annotations;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The values of a single element of one annotation type, across the elements of an
+ * {@link au.aklein.metajava.ElementIndex} carrying that annotation.
+ *
+ * Values are compared by their string form, as given by {@link #getKey(Object)}, and held sorted so that both exact
+ * values and value prefixes are found by binary search. Array values contribute one entry per array element.
+ */
+final class AnnotationValueIndex {
+    private final String[] keys;
+    private final int[] ids;
+
+    private AnnotationValueIndex(ElementIndex index, ElementType type, String annotationName, String valueName) {
+        List<String> entryKeys = new ArrayList<>();
+        ElementIndex.IdList entryIds = new ElementIndex.IdList();
+        for(int id : index.getAnnotated(type, annotationName)) {
+            for(AnnotationElement annotation : Condition.getAnnotations(index.get(type, id))) {
+                if(!annotation.getName().equals(annotationName)) continue;
+                for(Object value : annotation.getValues(valueName)) {
+                    String key = getKey(value);
+                    if(key == null) continue;
+                    entryKeys.add(key);
+                    entryIds.add(id);
+                }
+            }
+        }
+
+        int[] unsortedIds = entryIds.toArray();
+        Integer[] order = new Integer[unsortedIds.length];
+        for(int i=0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (first, second) -> entryKeys.get(first).compareTo(entryKeys.get(second)));
+
+        this.keys = new String[order.length];
+        this.ids = new int[order.length];
+        for(int i=0; i < order.length; i++) {
+            keys[i] = entryKeys.get(order[i]);
+            ids[i] = unsortedIds[order[i]];
+        }
+    }
+
+    /**
+     * Build an index of the values of an annotation element.
+     * @param index - the element index
+     * @param type - the type of element carrying the annotation
+     * @param annotationName - the internal name of the annotation type
+     * @param valueName - the name of the annotation element
+     * @return a new AnnotationValueIndex
+     */
+    static AnnotationValueIndex newAnnotationValueIndex(ElementIndex index, ElementType type,
+                                                       String annotationName, String valueName) {
+        return new AnnotationValueIndex(index, type, annotationName, valueName);
+    }
+
+    /**
+     * Gets the string form used to compare an annotation value. Enum constants are compared by constant name and
+     * classes by internal name; nested annotations have no string form.
+     * @param value - an annotation value, as returned by {@link AnnotationElement#getValue(String)}
+     * @return the string form, or null if the value can not be compared
+     */
+    static String getKey(Object value) {
+        if(value == null || value instanceof AnnotationElement || value instanceof List) return null;
+        return value.toString();
+    }
+
+    /**
+     * Gets the elements whose annotation value has the given string form.
+     * @param key - the value to find
+     * @return the ids of the elements, in ascending order
+     */
+    int[] getEqual(String key) {
+        int start = lowerBound(key);
+        int end = start;
+        while(end < keys.length && keys[end].equals(key)) end++;
+        return toIds(start, end);
+    }
+
+    /**
+     * Gets the elements whose annotation value starts with the given prefix.
+     * @param prefix - the prefix to find
+     * @return the ids of the elements, in ascending order
+     */
+    int[] getPrefixed(String prefix) {
+        int start = lowerBound(prefix);
+        int end = start;
+        while(end < keys.length && keys[end].startsWith(prefix)) end++;
+        return toIds(start, end);
+    }
+
+    private int[] toIds(int start, int end) {
+        int[] matches = Arrays.copyOfRange(ids, start, end);
+        Arrays.sort(matches);
+
+        int unique = 0;
+        for(int i=0; i < matches.length; i++) {
+            if(unique == 0 || matches[unique-1] != matches[i]) matches[unique++] = matches[i];
+        }
+        return Arrays.copyOf(matches, unique);
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(keys[mid].compareTo(key) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+}
@@ -18,8 +18,10 @@ package au.aklein.metajava;
 
 import au.aklein.metajava.internal.*;
 
+import java.lang.ref.WeakReference;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -29,39 +31,48 @@ public final class ClassElement implements Element {
     private final Path classPath;
     private final short accessFlags;
 
-    private final List<MethodElement> methods;
-    private final List<FieldElement> fields;
+    private volatile List<MethodElement> methods;
+    private volatile List<FieldElement> fields;
+    private final MemberSource memberSource;
     private final List<AnnotationElement> annotations;
 
     private final List<ClassElement> innerClasses;
     private final List<String> interfaces;
 
     private final String className;
+    private final String dottedClassName;
     private final String parentClass;
+    private final String genericSignature;
 
     private final String outerClass;
 
     private final boolean anonymous;
+    private final int hash;
+    private volatile LoadedClass loadedClass;
 
-    private ClassElement(ClassElementBuilder builder) {
-        this.methods = new ArrayList<>();
-
-
-        for(MethodElement.MethodElementBuilder methodBuilder : builder.methods) {
-            methods.add(methodBuilder.build(this));
-        }
-        this.fields = new ArrayList<>();
-        for(FieldElement.FieldElementBuilder fieldBuilder : builder.fields) {
-            fields.add(fieldBuilder.build(this));
+    private ClassElement(ClassElementBuilder builder, MemberStore store) {
+        //The name and hash come first, as the hash codes of members built below include them
+        this.className = builder.className;
+        this.hash = ElementHash.mix(className.hashCode());
+        this.memberSource = builder.memberSource;
+        if(store != null) {
+            this.methods = store.addMethods(builder.methods, this);
+            this.fields = store.addFields(builder.fields, this);
+            this.annotations = store.share(builder.annotations);
+        } else {
+            //Members of lazily scanned classes are left null until first accessed
+            if(builder.memberSource == null) setMembers(builder);
+            this.annotations = builder.annotations;
         }
 
-        this.annotations = builder.annotations;
-        this.classPath = builder.classPath;
-        this.innerClasses = builder.innerClasses;
         this.interfaces = builder.interfaces;
-        this.className = builder.className;
+        this.dottedClassName = builder.dottedClassName;
         this.parentClass = builder.parentClass;
+        this.genericSignature = builder.genericSignature;
         this.outerClass = builder.outerClass;
+
+        this.classPath = builder.classPath;
+        this.innerClasses = builder.innerClasses.isEmpty() ? Collections.<ClassElement>emptyList() : builder.innerClasses;
         this.anonymous = builder.isAnonymous;
         this.accessFlags = builder.accessFlags;
     }
@@ -86,7 +97,13 @@ public final class ClassElement implements Element {
      * @throws ClassNotFoundException
      */
     public Class<?> getClassType(ClassLoader classLoader) throws ClassNotFoundException {
-        return classLoader.loadClass(className.replace("/", "."));
+        LoadedClass loaded = loadedClass;
+        Class<?> type = loaded == null ? null : loaded.get(classLoader);
+        if(type == null) {
+            type = ReflectionCache.loadClass(classLoader, dottedClassName);
+            loadedClass = new LoadedClass(classLoader, type);
+        }
+        return type;
     }
 
     /**
@@ -94,7 +111,55 @@ public final class ClassElement implements Element {
      * @return A string containing the class name.
      */
     public String getClassName() {
-        return className.replace("/", ".");
+        return dottedClassName;
+    }
+
+    /**
+     * Returns the internal name of the class's direct superclass.
+     * @return A string containing the superclass name, or null if the class is java.lang.Object.
+     */
+    public String getSuperClassName() {
+        return parentClass;
+    }
+
+    /**
+     * Returns the internal names of the interfaces directly implemented by the class.
+     * @return A list of interface names.
+     */
+    public List<String> getInterfaceNames() {
+        return interfaces;
+    }
+
+    /**
+     * Returns the generic signature of the class, which includes its type parameters and the type arguments of its
+     * superclass and interfaces. The signature is parsed on first use and shared with every class declaring the same
+     * signature.
+     * @return The {@link au.aklein.metajava.GenericSignature}, or null if the class declares no generic types.
+     */
+    public GenericSignature getGenericSignature() {
+        return genericSignature == null ? null : GenericSignature.ofClass(genericSignature);
+    }
+
+    /**
+     * Returns the direct superclass of the class, including its type arguments.
+     * @return A {@link au.aklein.metajava.GenericType}, or null if the class is java.lang.Object.
+     */
+    public GenericType getGenericSuperclass() {
+        if(genericSignature != null) return getGenericSignature().getSuperclass();
+        return parentClass == null ? null : GenericType.rawType(parentClass);
+    }
+
+    /**
+     * Returns the interfaces directly implemented by the class, including their type arguments.
+     * @return A list of {@link au.aklein.metajava.GenericType} objects.
+     */
+    public List<GenericType> getGenericInterfaces() {
+        if(genericSignature != null) return getGenericSignature().getInterfaces();
+        List<GenericType> genericInterfaces = new ArrayList<>(interfaces.size());
+        for(String interfaceName : interfaces) {
+            genericInterfaces.add(GenericType.rawType(interfaceName));
+        }
+        return genericInterfaces;
     }
 
     /**
@@ -105,12 +170,26 @@ public final class ClassElement implements Element {
         return innerClasses;
     }
 
+    /**
+     * Returns {@link au.aklein.metajava.AnnotationElement AnnotationElements} which are present on the class.
+     * @return - A list of AnnotationElements
+     */
+    public List<AnnotationElement> getAnnotations() {
+        return annotations;
+    }
+
     /**
      * Gets a list of {@link au.aklein.metajava.MethodElement} objects representing the current class's member methods.
      * @return A list of {@link au.aklein.metajava.MethodElement} objects
      */
     public List<MethodElement> getMethods() {
-        return methods;
+        if(memberSource != null && memberSource.isBounded()) return memberSource.getCachedMembers(this).getMethods();
+        List<MethodElement> classMethods = methods;
+        if(classMethods == null) {
+            loadMembers();
+            classMethods = methods;
+        }
+        return classMethods;
     }
 
     /**
@@ -118,7 +197,7 @@ public final class ClassElement implements Element {
      * @return A {@link au.aklein.metajava.MethodElement} object
      */
     public MethodElement getDefaultConstructorElement() {
-        for(MethodElement methodElement : methods) {
+        for(MethodElement methodElement : getMethods()) {
             if(methodElement.getName().equals("<init>")) return methodElement;
         }
         return null;
@@ -129,19 +208,67 @@ public final class ClassElement implements Element {
      * @return A list of {@link au.aklein.metajava.FieldElement} objects
      */
     public List<FieldElement> getFields() {
-        return fields;
+        if(memberSource != null && memberSource.isBounded()) return memberSource.getCachedMembers(this).getFields();
+        List<FieldElement> classFields = fields;
+        if(classFields == null) {
+            loadMembers();
+            classFields = fields;
+        }
+        return classFields;
+    }
+
+    /**
+     * Reads the members of a class scanned with {@link au.aklein.metajava.StorageMode#LAZY}, once, however many
+     * threads ask for them.
+     */
+    private void loadMembers() {
+        synchronized (this) {
+            if(methods == null) setMembers(memberSource.read(this));
+        }
+    }
+
+    private void setMembers(ClassElementBuilder builder) {
+        ElementCache.CachedMembers members = newMembers(builder);
+        //Methods are published last, as loadMembers only checks them
+        this.fields = members.getFields();
+        this.methods = members.getMethods();
+    }
+
+    /**
+     * Builds the members of this class from a builder holding them, without keeping them on the class.
+     * @param builder - a builder read from the class file of this class
+     * @return the methods and fields of the class
+     */
+    ElementCache.CachedMembers newMembers(ClassElementBuilder builder) {
+        List<FieldElement> classFields = new ArrayList<>(builder.fields.size());
+        for(FieldElement.FieldElementBuilder fieldBuilder : builder.fields) {
+            classFields.add(fieldBuilder.build(this));
+        }
+        List<MethodElement> classMethods = new ArrayList<>(builder.methods.size());
+        for(MethodElement.MethodElementBuilder methodBuilder : builder.methods) {
+            classMethods.add(methodBuilder.build(this));
+        }
+        return new ElementCache.CachedMembers(this, classMethods, classFields);
+    }
+
+    short getAccessFlags() {
+        return accessFlags;
     }
 
     @Override
     public int hashCode() {
-        return 31*className.hashCode();
+        return hash;
     }
 
+    /**
+     * Classes are equal when they have the same name, which for inner classes includes the name of their outer class.
+     */
     @Override
     public boolean equals(Object other) {
         if(other == this) return true;
         if (!(other instanceof ClassElement)) return false;
-        return this.className.equals(((ClassElement) other).getName());
+        ClassElement classElement = (ClassElement) other;
+        return hash == classElement.hash && className.equals(classElement.className);
     }
 
     @Override
@@ -158,13 +285,13 @@ public final class ClassElement implements Element {
                 }
                 break;
             case METHOD:
-                for(MethodElement method : methods) {
-                    if(element.equals(method)) return true;
+                for(MethodElement method : getMethods()) {
+                    if(((MethodElement) element).matches(method)) return true;
                 }
                 break;
             case FIELD:
-                for(FieldElement field : fields) {
-                    if(element.equals(field)) return true;
+                for(FieldElement field : getFields()) {
+                    if(((FieldElement) element).matches(field)) return true;
                 }
                 break;
             default: return false;
@@ -183,15 +310,28 @@ public final class ClassElement implements Element {
         switch (returnType) {
             case TYPE: return (List<T>) innerClasses;
             case ANNOTATION: return (List<T>) annotations;
-            case METHOD: return (List<T>) methods;
-            case FIELD: return (List<T>) fields;
-            default:
-                final List<T> elements = new ArrayList<>();
-                elements.add((T) this);
-                return elements;
+            case METHOD: return (List<T>) getMethods();
+            case FIELD: return (List<T>) getFields();
+            default: return Collections.singletonList((T) this);
         }
     }
 
+    @Override
+    public boolean forEachAssociated(ElementType returnType, ElementVisitor visitor) {
+        List<? extends Element> associated;
+        switch (returnType) {
+            case TYPE: associated = innerClasses; break;
+            case ANNOTATION: associated = annotations; break;
+            case METHOD: associated = getMethods(); break;
+            case FIELD: associated = getFields(); break;
+            default: return visitor.visit(this);
+        }
+        for(int i=0; i < associated.size(); i++) {
+            if(!visitor.visit(associated.get(i))) return false;
+        }
+        return true;
+    }
+
 
     /**
      * Determines if the class is an inner class.
@@ -266,13 +406,32 @@ public final class ClassElement implements Element {
     }
 
 
+    /**
+     * The class most recently loaded for this element, and the loader it was loaded through, both held weakly so the
+     * element model does not keep loaders reachable. Callers which keep loading through the same loader find the
+     * class here without consulting the shared {@link au.aklein.metajava.ReflectionCache}.
+     */
+    private static final class LoadedClass {
+        private final WeakReference<ClassLoader> classLoader;
+        private final WeakReference<Class<?>> type;
+
+        private LoadedClass(ClassLoader classLoader, Class<?> type) {
+            this.classLoader = new WeakReference<>(classLoader);
+            this.type = new WeakReference<Class<?>>(type);
+        }
+
+        private Class<?> get(ClassLoader requested) {
+            return classLoader.get() == requested ? type.get() : null;
+        }
+    }
+
     /**
      * Builder class used to construct ClassElement objects from class file data
      */
     public final static class ClassElementBuilder {
         private Path classPath;
         private short accessFlags;
-        private ClassFileReader.ClassData classFileData;
+        private MemberSource memberSource;
 
         private List<MethodElement.MethodElementBuilder> methods;
         private List<FieldElement.FieldElementBuilder> fields;
@@ -281,7 +440,9 @@ public final class ClassElement implements Element {
         private List<String> interfaces;
 
         private String className;
+        private String dottedClassName;
         private String parentClass;
+        private String genericSignature;
 
         private String outerClass;
 
@@ -289,51 +450,69 @@ public final class ClassElement implements Element {
         private boolean isInner;
         private boolean isAnonymous;
 
-        private ClassElementBuilder(Path classPath, ClassFileReader.ClassData classData) {
+        private ClassElementBuilder(Path classPath) {
             this.classPath = classPath;
-            this.classFileData = classData;
         }
 
         public static ClassElementBuilder beginNewClassElement(Path classPath, ClassFileReader.ClassData classData) {
-            return new ClassElementBuilder(classPath,classData).generateElements();
+            return beginNewClassElement(classPath, classData, NameTable.newNameTable());
+        }
+
+        /**
+         * Begin building a class element whose names and annotations are shared through the table of the scan.
+         * @param classPath - the path of the class file
+         * @param classData - the data read from the class file
+         * @param names - the table of the current scan
+         * @return a new ClassElementBuilder
+         */
+        public static ClassElementBuilder beginNewClassElement(Path classPath, ClassFileReader.ClassData classData,
+                                                               NameTable names) {
+            return new ClassElementBuilder(classPath).generateElements(classData, names);
         }
 
+        /**
+         * Copies everything the element needs out of the class data. The builder keeps no reference to the class data,
+         * so the reader's constant pool, attributes and annotation data are unreachable once the reader is dropped,
+         * even while builders are held until inner classes are linked.
+         */
         @SuppressWarnings("unchecked")
-        private ClassElementBuilder generateElements() {
-            this.className = classFileData.getClassName();
-            this.parentClass = classFileData.getSuperClassName();
+        private ClassElementBuilder generateElements(ClassFileReader.ClassData classFileData, NameTable names) {
+            this.className = names.intern(classFileData.getClassName());
+            this.dottedClassName = names.toClassName(className);
+            this.parentClass = names.intern(classFileData.getSuperClassName());
             this.accessFlags = classFileData.getAccessFlags();
-            this.interfaces = classFileData.getInterfaces();
+            this.interfaces = names.internAll(classFileData.getInterfaces());
 
             this.innerClasses = new ArrayList<>();
 
             List<MethodElement.MethodElementBuilder> methodElements = new ArrayList<>();
             List<FieldElement.FieldElementBuilder> fieldElements = new ArrayList<>();
 
-            ClassAttributeVisitor classAttributes = new ClassAttributeVisitor(className);
+            ClassAttributeVisitor classAttributes = new ClassAttributeVisitor(className, names);
             for(AttributeInfo attribute : classFileData.getAttributes()) {
                 attribute.accept(classAttributes);
             }
 
             this.isAnonymous = classAttributes.isAnonymous();
             this.outerClass = classAttributes.getOuterClass();
+            this.genericSignature = names.intern(classAttributes.getSignature());
             this.isInner = classAttributes.isInner();
             this.innerClassNames = classAttributes.getInnerClassNames();
 
             for(FieldMethodInfo field : classFileData.getFields()) {
-                FieldAttributeVisitor fieldAttributes = new FieldAttributeVisitor();
+                FieldAttributeVisitor fieldAttributes = new FieldAttributeVisitor(names);
                 for(AttributeInfo attribute : field.getAttributes()) {
                     attribute.accept(fieldAttributes);
                 }
-                fieldElements.add(new FieldElement.FieldElementBuilder(field, fieldAttributes));
+                fieldElements.add(new FieldElement.FieldElementBuilder(field, fieldAttributes, names));
             }
 
             for(FieldMethodInfo method : classFileData.getMethods()) {
-                MethodAttributeVisitor methodAttributes = new MethodAttributeVisitor();
+                MethodAttributeVisitor methodAttributes = new MethodAttributeVisitor(names);
                 for(AttributeInfo attribute : method.getAttributes()) {
                     attribute.accept(methodAttributes);
                 }
-                methodElements.add(new MethodElement.MethodElementBuilder(method, methodAttributes));
+                methodElements.add(new MethodElement.MethodElementBuilder(method, methodAttributes, names));
             }
 
             this.annotations = classAttributes.getAnnotations();
@@ -344,7 +523,34 @@ public final class ClassElement implements Element {
         }
 
         public ClassElement construct() {
-            return new ClassElement(this);
+            return new ClassElement(this, null);
+        }
+
+        /**
+         * Construct the class, storing its members in the shared store of the scan.
+         * @param store - the store of the scan, or null to construct standard member objects
+         * @return the constructed ClassElement
+         */
+        ClassElement construct(MemberStore store) {
+            return new ClassElement(this, store);
+        }
+
+        /**
+         * Reads the members of the class from the given source on first access, rather than from the builder.
+         * @param memberSource - the source of a lazy scan, or null to use the members read into the builder
+         * @return this builder
+         */
+        ClassElementBuilder withMemberSource(MemberSource memberSource) {
+            this.memberSource = memberSource;
+            return this;
+        }
+
+        Path getClassPath() {
+            return classPath;
+        }
+
+        String getName() {
+            return className;
         }
 
         public boolean isInner() {
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Member storage for scans using {@link au.aklein.metajava.StorageMode#COMPACT}.
+ *
+ * Methods and fields are stored column-wise in primitive arrays indexed by a member id, rather than as one object per
+ * member. Names and signatures are stored once each, as UTF-8 in a single string table, and the columns refer to them
+ * by offset; each string is preceded by its length as two bytes, which is enough for any name in a class file.
+ * Method descriptors, which make up most of the text of a class file's members, are stored in the same table as the
+ * offsets of their parameter and return types, so a type named by many descriptors is held once. The counts and
+ * offsets of a descriptor are written as variable length integers.
+ *
+ * Most members have no generic signature and no annotations, so rather than a column each, these are held together
+ * in a record in the same table, and a member refers to its record by offset, or to none. A record holds the offset
+ * of the generic signature plus one, or zero if there is none, the id of the member's annotation list and, for
+ * methods, the id of its parameter annotation lists.
+ *
+ * A class refers to its members as a contiguous range of ids, and member elements and their names are decoded from
+ * the columns each time a member is read.
+ */
+final class CompactStore extends MemberStore {
+    private static final int NO_STRING = -1;
+    private static final int NO_ATTRIBUTES = -1;
+
+    private Map<String, Integer> stringOffsets;
+    private Map<String, Integer> descriptorOffsets;
+    private byte[] strings;
+    private int stringsLength;
+
+    private int methodCount;
+    private int[] methodNames;
+    private int[] methodDescriptors;
+    private int[] methodAttributes;
+    private short[] methodFlags;
+
+    private int fieldCount;
+    private int[] fieldNames;
+    private int[] fieldAttributes;
+    private short[] fieldFlags;
+
+    private CompactStore() {
+        this.stringOffsets = new HashMap<>();
+        this.descriptorOffsets = new HashMap<>();
+        this.strings = new byte[4096];
+        this.methodNames = new int[64];
+        this.methodDescriptors = new int[64];
+        this.methodAttributes = new int[64];
+        this.methodFlags = new short[64];
+        this.fieldNames = new int[64];
+        this.fieldAttributes = new int[64];
+        this.fieldFlags = new short[64];
+    }
+
+    /**
+     * Create an empty store for a single scan.
+     * @return a new CompactStore
+     */
+    static CompactStore newCompactStore() {
+        return new CompactStore();
+    }
+
+    @Override
+    List<MethodElement> addMethods(List<MethodElement.MethodElementBuilder> builders, ClassElement declaringClass) {
+        if(builders.isEmpty()) return Collections.emptyList();
+        int start = methodCount;
+        ensureMethodCapacity(methodCount + builders.size());
+        for(MethodElement.MethodElementBuilder builder : builders) {
+            methodNames[methodCount] = addString(builder.getName());
+            methodDescriptors[methodCount] = addDescriptor(builder.getSignature());
+            methodAttributes[methodCount] = addAttributes(builder.getGenericSignature(),
+                                                          addAnnotations(builder.getAnnotations()),
+                                                          addParameterAnnotations(builder.getParameterAnnotations()));
+            methodFlags[methodCount] = builder.getAccessFlags();
+            methodCount++;
+        }
+        return new MethodList(start, builders.size(), declaringClass);
+    }
+
+    @Override
+    List<FieldElement> addFields(List<FieldElement.FieldElementBuilder> builders, ClassElement declaringClass) {
+        if(builders.isEmpty()) return Collections.emptyList();
+        int start = fieldCount;
+        ensureFieldCapacity(fieldCount + builders.size());
+        for(FieldElement.FieldElementBuilder builder : builders) {
+            fieldNames[fieldCount] = addString(builder.getName());
+            fieldAttributes[fieldCount] = addAttributes(builder.getGenericSignature(),
+                                                        addAnnotations(builder.getAnnotations()), NONE);
+            fieldFlags[fieldCount] = builder.getAccessFlags();
+            fieldCount++;
+        }
+        return new FieldList(start, builders.size(), declaringClass);
+    }
+
+    /**
+     * Releases the tables used while adding strings and shrinks every array to its contents.
+     */
+    @Override
+    void trim() {
+        super.trim();
+        stringOffsets = null;
+        descriptorOffsets = null;
+        strings = Arrays.copyOf(strings, stringsLength);
+        methodNames = Arrays.copyOf(methodNames, methodCount);
+        methodDescriptors = Arrays.copyOf(methodDescriptors, methodCount);
+        methodAttributes = Arrays.copyOf(methodAttributes, methodCount);
+        methodFlags = Arrays.copyOf(methodFlags, methodCount);
+        fieldNames = Arrays.copyOf(fieldNames, fieldCount);
+        fieldAttributes = Arrays.copyOf(fieldAttributes, fieldCount);
+        fieldFlags = Arrays.copyOf(fieldFlags, fieldCount);
+    }
+
+    private int addString(String value) {
+        if(value == null) return NO_STRING;
+        Integer offset = stringOffsets.get(value);
+        if(offset == null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureStringCapacity(2 + bytes.length);
+            offset = stringsLength;
+            strings[stringsLength++] = (byte) (bytes.length >>> 8);
+            strings[stringsLength++] = (byte) bytes.length;
+            System.arraycopy(bytes, 0, strings, stringsLength, bytes.length);
+            stringsLength += bytes.length;
+            stringOffsets.put(value, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Adds the generic signature and annotations of a member as a record, unless it has none of them.
+     */
+    private int addAttributes(String genericSignature, int annotations, int parameterAnnotations) {
+        if(genericSignature == null && annotations == NONE && parameterAnnotations == NONE) return NO_ATTRIBUTES;
+        int signature = addString(genericSignature);
+        ensureStringCapacity(15);
+        int offset = stringsLength;
+        putVarint(signature + 1);
+        putVarint(annotations);
+        putVarint(parameterAnnotations);
+        return offset;
+    }
+
+    /**
+     * Adds a method descriptor as one more than its parameter count, followed by the offsets of its parameter and
+     * return types. A descriptor which can not be split into types is held whole, after a zero.
+     */
+    private int addDescriptor(String descriptor) {
+        Integer offset = descriptorOffsets.get(descriptor);
+        if(offset != null) return offset;
+
+        int[] types = new int[descriptor.length()];
+        int count = 0;
+        int index = 1;
+        boolean valid = descriptor.startsWith("(");
+        while(valid && index < descriptor.length() && descriptor.charAt(index) != ')') {
+            int end = typeEnd(descriptor, index);
+            valid = end > index;
+            if(valid) types[count++] = addString(descriptor.substring(index, end));
+            index = end;
+        }
+        valid &= index + 1 < descriptor.length() && typeEnd(descriptor, index + 1) == descriptor.length();
+        if(valid) {
+            types[count] = addString(descriptor.substring(index + 1));
+        } else {
+            types[0] = addString(descriptor);
+            count = -1;
+        }
+
+        ensureStringCapacity(5 * (count + 3));
+        offset = stringsLength;
+        putVarint(count + 1);
+        for(int i=0; i <= Math.max(count, 0); i++) {
+            putVarint(types[i]);
+        }
+        descriptorOffsets.put(descriptor, offset);
+        return offset;
+    }
+
+    /**
+     * Finds the end of the type starting at an index of a descriptor.
+     * @return the index following the type, or the start index if there is no type there
+     */
+    private static int typeEnd(String descriptor, int index) {
+        int end = index;
+        while(end < descriptor.length() && descriptor.charAt(end) == '[') end++;
+        if(end >= descriptor.length()) return index;
+        if(descriptor.charAt(end) != 'L') return "ZBCSIJFDV".indexOf(descriptor.charAt(end)) < 0 ? index : end + 1;
+        int semicolon = descriptor.indexOf(';', end);
+        return semicolon < 0 ? index : semicolon + 1;
+    }
+
+    private void putVarint(int value) {
+        while((value & ~0x7F) != 0) {
+            strings[stringsLength++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        strings[stringsLength++] = (byte) value;
+    }
+
+    private void ensureStringCapacity(int required) {
+        if(strings.length - stringsLength < required) {
+            strings = Arrays.copyOf(strings, Math.max(stringsLength + required, strings.length * 2));
+        }
+    }
+
+    private String readString(int offset) {
+        if(offset == NO_STRING) return null;
+        int length = (strings[offset] & 0xFF) << 8 | strings[offset + 1] & 0xFF;
+        return new String(strings, offset + 2, length, StandardCharsets.UTF_8);
+    }
+
+    private String readDescriptor(int offset) {
+        int[] position = { offset };
+        int count = readVarint(position) - 1;
+        if(count < 0) return readString(readVarint(position));
+
+        StringBuilder descriptor = new StringBuilder("(");
+        for(int i=0; i < count; i++) {
+            appendString(descriptor, readVarint(position));
+        }
+        descriptor.append(')');
+        appendString(descriptor, readVarint(position));
+        return descriptor.toString();
+    }
+
+    private int readVarint(int[] position) {
+        int value = 0;
+        for(int shift = 0; ; shift += 7) {
+            byte next = strings[position[0]++];
+            value |= (next & 0x7F) << shift;
+            if(next >= 0) return value;
+        }
+    }
+
+    private void appendString(StringBuilder builder, int offset) {
+        int length = (strings[offset] & 0xFF) << 8 | strings[offset + 1] & 0xFF;
+        //Types in descriptors are ASCII apart from the rare class with a non-ASCII name
+        for(int i = offset + 2; i < offset + 2 + length; i++) {
+            if(strings[i] < 0) {
+                builder.append(readString(offset));
+                return;
+            }
+        }
+        for(int i = offset + 2; i < offset + 2 + length; i++) {
+            builder.append((char) strings[i]);
+        }
+    }
+
+    private void ensureMethodCapacity(int capacity) {
+        if(capacity <= methodNames.length) return;
+        int size = Math.max(capacity, methodNames.length * 2);
+        methodNames = Arrays.copyOf(methodNames, size);
+        methodDescriptors = Arrays.copyOf(methodDescriptors, size);
+        methodAttributes = Arrays.copyOf(methodAttributes, size);
+        methodFlags = Arrays.copyOf(methodFlags, size);
+    }
+
+    private void ensureFieldCapacity(int capacity) {
+        if(capacity <= fieldNames.length) return;
+        int size = Math.max(capacity, fieldNames.length * 2);
+        fieldNames = Arrays.copyOf(fieldNames, size);
+        fieldAttributes = Arrays.copyOf(fieldAttributes, size);
+        fieldFlags = Arrays.copyOf(fieldFlags, size);
+    }
+
+    /**
+     * The methods of one class, decoded from the store as they are read.
+     */
+    private final class MethodList extends AbstractList<MethodElement> implements RandomAccess {
+        private final int start;
+        private final int size;
+        private final ClassElement declaringClass;
+
+        private MethodList(int start, int size, ClassElement declaringClass) {
+            this.start = start;
+            this.size = size;
+            this.declaringClass = declaringClass;
+        }
+
+        @Override
+        public MethodElement get(int index) {
+            if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+            int id = start + index;
+            int attributes = methodAttributes[id];
+            if(attributes == NO_ATTRIBUTES) {
+                return new MethodElement(readString(methodNames[id]), readDescriptor(methodDescriptors[id]), null,
+                                         methodFlags[id], NO_ANNOTATIONS, NO_PARAMETER_ANNOTATIONS, declaringClass);
+            }
+            int[] position = { attributes };
+            String genericSignature = readString(readVarint(position) - 1);
+            List<AnnotationElement> annotations = getAnnotations(readVarint(position));
+            return new MethodElement(readString(methodNames[id]), readDescriptor(methodDescriptors[id]),
+                                     genericSignature, methodFlags[id], annotations,
+                                     getParameterAnnotations(readVarint(position)), declaringClass);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The fields of one class, decoded from the store as they are read.
+     */
+    private final class FieldList extends AbstractList<FieldElement> implements RandomAccess {
+        private final int start;
+        private final int size;
+        private final ClassElement declaringClass;
+
+        private FieldList(int start, int size, ClassElement declaringClass) {
+            this.start = start;
+            this.size = size;
+            this.declaringClass = declaringClass;
+        }
+
+        @Override
+        public FieldElement get(int index) {
+            if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+            int id = start + index;
+            int attributes = fieldAttributes[id];
+            if(attributes == NO_ATTRIBUTES) {
+                return new FieldElement(readString(fieldNames[id]), null, fieldFlags[id], NO_ANNOTATIONS,
+                                        declaringClass);
+            }
+            int[] position = { attributes };
+            String genericSignature = readString(readVarint(position) - 1);
+            return new FieldElement(readString(fieldNames[id]), genericSignature, fieldFlags[id],
+                                    getAnnotations(readVarint(position)), declaringClass);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
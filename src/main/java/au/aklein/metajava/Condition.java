@@ -0,0 +1,978 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+/**
+ * A composable condition which elements must satisfy to be returned by
+ * {@link au.aklein.metajava.MetaJava.MetaQuery#matching(Condition)}.
+ *
+ * Conditions are combined with {@link #and(Condition...)}, {@link #or(Condition...)} and {@link #not(Condition)}, and
+ * may follow the relationship between an element and its declaring element with {@link #declaredBy(Condition)} and
+ * {@link #declares(ElementType, Condition)}.
+ *
+ * When a query is evaluated, conditions which can be answered from an index, such as annotation lookups, are
+ * resolved first. Within a conjunction the most selective index lookup is used as the starting set of candidates,
+ * and the remaining conditions are tested on those candidates in order of increasing cost. Only when no index is
+ * usable is every element of the target type tested.
+ */
+public abstract class Condition {
+    private static final int MODIFIER_COST = 1;
+    private static final int NAME_COST = 2;
+    private static final int ANNOTATION_COST = 3;
+    private static final int PATTERN_COST = 4;
+    private static final int ELEMENT_COST = 6;
+    private static final int RELATION_COST = 2;
+    private static final int MEMBER_FACTOR = 4;
+
+    private static final int PARALLEL_THRESHOLD = 8192;
+    private static final int SPLIT_SIZE = 2048;
+
+    private static final Comparator<Condition> BY_COST = (first, second) -> Integer.compare(first.cost(), second.cost());
+
+    Condition() {
+    }
+
+    /**
+     * Tests a single element against the condition.
+     * @param index - the index holding the element
+     * @param type - the type of the element
+     * @param id - the id of the element
+     * @return True if the element satisfies the condition, otherwise false
+     */
+    abstract boolean test(ElementIndex index, ElementType type, int id);
+
+    /**
+     * Relative cost of testing a single element, used to order conditions.
+     * @return the cost
+     */
+    abstract int cost();
+
+    /**
+     * Resolves the condition from the index without testing each element.
+     * @param index - the index to search
+     * @param type - the type of element to search for
+     * @return the ids of matching elements in ascending order, or null if the condition can not be resolved from
+     * the index
+     */
+    int[] lookup(ElementIndex index, ElementType type) {
+        return null;
+    }
+
+    /**
+     * Finds every element of a given type which satisfies the condition, using the index where possible.
+     * @param index - the index to search
+     * @param type - the type of element to search for
+     * @return the ids of matching elements in ascending order
+     */
+    final int[] select(ElementIndex index, ElementType type) {
+        int[] ids = lookup(index, type);
+        if(ids != null) return ids;
+        return filter(index, type, null, index.size(type));
+    }
+
+    /**
+     * Finds the first elements of a given type which satisfy the condition, stopping as soon as enough have been
+     * found.
+     * @param index - the index to search
+     * @param type - the type of element to search for
+     * @param limit - the maximum number of elements to find
+     * @return the ids of the lowest numbered matching elements, in ascending order
+     */
+    int[] select(ElementIndex index, ElementType type, int limit) {
+        int[] ids = lookup(index, type);
+        if(ids != null) return ids.length > limit ? Arrays.copyOf(ids, limit) : ids;
+        return scan(index, type, null, index.size(type), limit);
+    }
+
+    /**
+     * Tests elements against the condition in order on the calling thread, stopping once the limit is reached.
+     * @param index - the index holding the elements
+     * @param type - the type of the elements
+     * @param candidates - the ids to test in ascending order, or null to test every id below the count
+     * @param count - the number of ids to test
+     * @param limit - the maximum number of matches to return
+     * @return the ids of matching elements in ascending order
+     */
+    final int[] scan(ElementIndex index, ElementType type, int[] candidates, int count, int limit) {
+        ElementIndex.IdList matches = new ElementIndex.IdList();
+        for(int position=0; position < count && matches.size() < limit; position++) {
+            int id = candidates == null ? position : candidates[position];
+            if(test(index, type, id)) matches.add(id);
+        }
+        return matches.toArray();
+    }
+
+    /**
+     * Tests a range of elements against the condition. Large ranges are split between the threads of the common
+     * fork-join pool; each task collects its matches separately and the results are joined in range order, so the
+     * ids are returned in ascending order regardless of how the work was divided.
+     * @param index - the index holding the elements
+     * @param type - the type of the elements
+     * @param candidates - the ids to test in ascending order, or null to test every id below the count
+     * @param count - the number of ids to test
+     * @return the ids of matching elements in ascending order
+     */
+    final int[] filter(ElementIndex index, ElementType type, int[] candidates, int count) {
+        return filter(index, type, new Condition[] { this }, candidates, count)[0];
+    }
+
+    /**
+     * Tests a range of elements against several conditions in a single pass, as described by
+     * {@link #filter(ElementIndex, ElementType, int[], int)}.
+     * @param index - the index holding the elements
+     * @param type - the type of the elements
+     * @param conditions - the conditions to test
+     * @param candidates - the ids to test in ascending order, or null to test every id below the count
+     * @param count - the number of ids to test
+     * @return the ids of the elements matching each condition, in ascending order
+     */
+    static int[][] filter(ElementIndex index, ElementType type, Condition[] conditions, int[] candidates, int count) {
+        FilterTask task = new FilterTask(conditions, index, type, candidates, 0, count);
+        if(count < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) return task.compute();
+        return ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * Returns a condition satisfied when both this condition and another are satisfied.
+     * @param other - the other condition
+     * @return a new Condition
+     */
+    public Condition and(Condition other) {
+        return and(this, other);
+    }
+
+    /**
+     * Returns a condition satisfied when either this condition or another is satisfied.
+     * @param other - the other condition
+     * @return a new Condition
+     */
+    public Condition or(Condition other) {
+        return or(this, other);
+    }
+
+    /**
+     * Returns a condition satisfied when this condition is not.
+     * @return a new Condition
+     */
+    public Condition negate() {
+        return not(this);
+    }
+
+    /**
+     * Matches elements which contain any of the given elements, as tested by {@link Element#has(Element)}.
+     * @param elements - the elements to search for
+     * @return a new Condition
+     */
+    public static Condition has(Element... elements) {
+        return new HasCondition(elements);
+    }
+
+    /**
+     * Matches elements carrying the given annotation.
+     * @param annotationClass - the annotation class
+     * @return a new Condition
+     */
+    public static Condition annotatedWith(Class<?> annotationClass) {
+        return has(Element.Annotation(annotationClass));
+    }
+
+    /**
+     * Matches elements carrying the given annotation.
+     * @param annotationName - the name of the annotation type, delimited by either periods or forward slashes
+     * @return a new Condition
+     */
+    public static Condition annotatedWith(String annotationName) {
+        return has(new AnnotationElement(annotationName.replace('.', '/')));
+    }
+
+    /**
+     * Matches elements carrying the given annotation, or carrying any annotation which is itself annotated with it
+     * directly or through further meta-annotations, such as a stereotype annotated with <code>@Component</code>.
+     * Annotation types which were not scanned are read from the class path without being loaded.
+     * @param annotationClass - the annotation class
+     * @return a new Condition
+     */
+    public static Condition metaAnnotatedWith(Class<?> annotationClass) {
+        return metaAnnotatedWith(annotationClass.getName());
+    }
+
+    /**
+     * Matches elements carrying the given annotation either directly or through meta-annotations, as described by
+     * {@link #metaAnnotatedWith(Class)}.
+     * @param annotationName - the name of the annotation type, delimited by either periods or forward slashes
+     * @return a new Condition
+     */
+    public static Condition metaAnnotatedWith(String annotationName) {
+        return new MetaAnnotationCondition(annotationName.replace('.', '/'));
+    }
+
+    /**
+     * Matches elements carrying an annotation with the given element value. Values are compared by their string
+     * form: enum constants by constant name, classes by internal name, and other values by
+     * {@link Object#toString()}. An array element matches if any of its values matches.
+     * @param annotationName - the name of the annotation type, delimited by either periods or forward slashes
+     * @param valueName - the name of the annotation element, such as "value"
+     * @param value - the value to match
+     * @return a new Condition
+     */
+    public static Condition annotationValue(String annotationName, String valueName, Object value) {
+        return new AnnotationValueCondition(annotationName.replace('.', '/'), valueName,
+                                            AnnotationValueIndex.getKey(value), false);
+    }
+
+    /**
+     * Matches elements carrying an annotation with an element value starting with the given prefix, such as every
+     * method whose <code>@Path</code> value starts with "/admin". Values are compared by their string form, as
+     * described by {@link #annotationValue(String, String, Object)}.
+     * @param annotationName - the name of the annotation type, delimited by either periods or forward slashes
+     * @param valueName - the name of the annotation element, such as "value"
+     * @param prefix - the prefix to match
+     * @return a new Condition
+     */
+    public static Condition annotationValueStartsWith(String annotationName, String valueName, String prefix) {
+        return new AnnotationValueCondition(annotationName.replace('.', '/'), valueName, prefix, true);
+    }
+
+    /**
+     * Matches elements with the given name. Type names may be delimited by either periods or forward slashes.
+     * @param name - the name of the element
+     * @return a new Condition
+     */
+    public static Condition named(String name) {
+        return new NameCondition(name);
+    }
+
+    /**
+     * Matches elements whose name matches a regular expression. Types are matched against their period delimited
+     * name, as returned by {@link ClassElement#getClassName()}.
+     * @param regex - the regular expression
+     * @return a new Condition
+     */
+    public static Condition nameMatches(String regex) {
+        return new PatternCondition(Pattern.compile(regex));
+    }
+
+    /**
+     * Matches types within a package or its subpackages, and the members and parameters of those types.
+     * @param packageName - the name of the package, delimited by either periods or forward slashes
+     * @return a new Condition
+     */
+    public static Condition inPackage(String packageName) {
+        return new PackageCondition(packageName);
+    }
+
+    /**
+     * Matches methods and constructors with at least one parameter of the given type, and parameters of the given
+     * type.
+     * @param parameterType - the parameter type
+     * @return a new Condition
+     */
+    public static Condition hasParameterType(Class<?> parameterType) {
+        return hasParameterType(parameterType.getName());
+    }
+
+    /**
+     * Matches methods and constructors with at least one parameter of the given type, and parameters of the given
+     * type.
+     * @param typeName - the name of the parameter type in the format of {@link Class#getName()}, such as
+     *                 <code>int</code>, <code>java.lang.String</code> or <code>[Ljava.lang.String;</code>.
+     *                 Forward slashes may be used in place of periods.
+     * @return a new Condition
+     */
+    public static Condition hasParameterType(String typeName) {
+        return new SignatureCondition(SignatureCondition.PARAMETER_TYPE, typeName.replace('/', '.'), 0);
+    }
+
+    /**
+     * Matches methods with the given return type.
+     * @param returnType - the return type, or <code>void.class</code>
+     * @return a new Condition
+     */
+    public static Condition returns(Class<?> returnType) {
+        return returns(returnType.getName());
+    }
+
+    /**
+     * Matches methods with the given return type.
+     * @param typeName - the name of the return type in the format of {@link Class#getName()}, or <code>void</code>.
+     *                 Forward slashes may be used in place of periods.
+     * @return a new Condition
+     */
+    public static Condition returns(String typeName) {
+        return new SignatureCondition(SignatureCondition.RETURN_TYPE, typeName.replace('/', '.'), 0);
+    }
+
+    /**
+     * Matches methods and constructors declaring the given number of parameters.
+     * @param parameterCount - the number of parameters
+     * @return a new Condition
+     */
+    public static Condition parameterCount(int parameterCount) {
+        return new SignatureCondition(SignatureCondition.ARITY, null, parameterCount);
+    }
+
+    /**
+     * Matches types, methods and fields which have all of the given access flags set. The flags share their values
+     * with the constants in {@link java.lang.reflect.Modifier}.
+     * @param modifiers - the access flags which must be set
+     * @return a new Condition
+     */
+    public static Condition withModifiers(int modifiers) {
+        return new ModifierCondition(modifiers, true);
+    }
+
+    /**
+     * Matches types, methods and fields which have none of the given access flags set. The flags share their values
+     * with the constants in {@link java.lang.reflect.Modifier}.
+     * @param modifiers - the access flags which must not be set
+     * @return a new Condition
+     */
+    public static Condition withoutModifiers(int modifiers) {
+        return new ModifierCondition(modifiers, false);
+    }
+
+    /**
+     * Matches elements whose declaring element satisfies a condition: the declaring type of a method, constructor or
+     * field, or the declaring method of a parameter.
+     * @param owner - the condition the declaring element must satisfy
+     * @return a new Condition
+     */
+    public static Condition declaredBy(Condition owner) {
+        return new DeclaredByCondition(owner);
+    }
+
+    /**
+     * Matches elements which declare at least one element of the given type satisfying a condition: the methods,
+     * constructors or fields of a type, or the parameters of a method or constructor.
+     * @param memberType - the type of the declared elements
+     * @param member - the condition a declared element must satisfy
+     * @return a new Condition
+     */
+    public static Condition declares(ElementType memberType, Condition member) {
+        return new DeclaresCondition(memberType, member);
+    }
+
+    /**
+     * Returns a condition satisfied when every one of the given conditions is satisfied.
+     * @param conditions - the conditions to combine
+     * @return a new Condition
+     */
+    public static Condition and(Condition... conditions) {
+        return new AndCondition(conditions);
+    }
+
+    /**
+     * Returns a condition satisfied when any of the given conditions is satisfied.
+     * @param conditions - the conditions to combine
+     * @return a new Condition
+     */
+    public static Condition or(Condition... conditions) {
+        return new OrCondition(conditions);
+    }
+
+    /**
+     * Returns a condition satisfied when the given condition is not.
+     * @param condition - the condition to negate
+     * @return a new Condition
+     */
+    public static Condition not(Condition condition) {
+        return new NotCondition(condition);
+    }
+
+    private static int declaringType(ElementIndex index, ElementType type, int id) {
+        switch (type) {
+            case TYPE: return id;
+            case PARAMETER: return index.getOwner(ElementType.METHOD, index.getOwner(type, id));
+            default: return index.getOwner(type, id);
+        }
+    }
+
+    private static short accessFlags(Element element) {
+        switch (element.type()) {
+            case TYPE: return ((ClassElement) element).getAccessFlags();
+            case METHOD:
+            case CONSTRUCTOR: return ((MethodElement) element).getAccessFlags();
+            case FIELD: return ((FieldElement) element).getAccessFlags();
+            default: return 0;
+        }
+    }
+
+    static List<AnnotationElement> getAnnotations(Element element) {
+        switch (element.type()) {
+            case TYPE: return ((ClassElement) element).getAnnotations();
+            case METHOD:
+            case CONSTRUCTOR: return ((MethodElement) element).getAnnotations();
+            case FIELD: return ((FieldElement) element).getAnnotations();
+            case PARAMETER: return ((ParameterElement) element).getAnnotations();
+            default: return element.getAssociated(ElementType.ANNOTATION);
+        }
+    }
+
+    private static final class HasCondition extends Condition {
+        private final Element[] elements;
+        private final boolean annotationsOnly;
+
+        private HasCondition(Element[] elements) {
+            this.elements = elements;
+            boolean annotations = true;
+            for(Element element : elements) {
+                if(element.type() != ElementType.ANNOTATION) annotations = false;
+            }
+            this.annotationsOnly = annotations;
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            Element element = index.get(type, id);
+            for(Element searchElement : elements) {
+                if(element.has(searchElement)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        int[] lookup(ElementIndex index, ElementType type) {
+            if(!annotationsOnly || !index.isIndexed(type)) return null;
+            List<int[]> matches = new ArrayList<>();
+            for(Element searchElement : elements) {
+                matches.add(index.getAnnotated(type, searchElement.getName()));
+            }
+            return ElementIndex.union(matches);
+        }
+
+        @Override
+        int cost() {
+            return annotationsOnly ? ANNOTATION_COST : ELEMENT_COST;
+        }
+    }
+
+    private static final class MetaAnnotationCondition extends Condition {
+        private final String annotationName;
+
+        private MetaAnnotationCondition(String annotationName) {
+            this.annotationName = annotationName;
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            List<String> annotationNames = index.getAnnotationHierarchy().getAnnotatedWith(type, annotationName);
+            for(AnnotationElement annotation : getAnnotations(index.get(type, id))) {
+                if(annotationNames.contains(annotation.getName())) return true;
+            }
+            return false;
+        }
+
+        @Override
+        int[] lookup(ElementIndex index, ElementType type) {
+            if(!index.isIndexed(type)) return null;
+            List<int[]> matches = new ArrayList<>();
+            for(String name : index.getAnnotationHierarchy().getAnnotatedWith(type, annotationName)) {
+                matches.add(index.getAnnotated(type, name));
+            }
+            return ElementIndex.union(matches);
+        }
+
+        @Override
+        int cost() {
+            return ANNOTATION_COST;
+        }
+    }
+
+    private static final class AnnotationValueCondition extends Condition {
+        private final String annotationName;
+        private final String valueName;
+        private final String key;
+        private final boolean prefix;
+
+        private AnnotationValueCondition(String annotationName, String valueName, String key, boolean prefix) {
+            this.annotationName = annotationName;
+            this.valueName = valueName;
+            this.key = key;
+            this.prefix = prefix;
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            if(key == null) return false;
+            for(AnnotationElement annotation : getAnnotations(index.get(type, id))) {
+                if(!annotation.getName().equals(annotationName)) continue;
+                for(Object value : annotation.getValues(valueName)) {
+                    String valueKey = AnnotationValueIndex.getKey(value);
+                    if(valueKey != null && (prefix ? valueKey.startsWith(key) : valueKey.equals(key))) return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int[] lookup(ElementIndex index, ElementType type) {
+            if(!index.isIndexed(type)) return null;
+            if(key == null) return new int[0];
+            AnnotationValueIndex values = index.getValueIndex(type, annotationName, valueName);
+            return prefix ? values.getPrefixed(key) : values.getEqual(key);
+        }
+
+        @Override
+        int cost() {
+            return ANNOTATION_COST;
+        }
+    }
+
+    private static final class SignatureCondition extends Condition {
+        private static final int PARAMETER_TYPE = 0;
+        private static final int RETURN_TYPE = 1;
+        private static final int ARITY = 2;
+
+        private final int kind;
+        private final String typeName;
+        private final int parameterCount;
+
+        private SignatureCondition(int kind, String typeName, int parameterCount) {
+            this.kind = kind;
+            this.typeName = typeName;
+            this.parameterCount = parameterCount;
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            if(type == ElementType.PARAMETER) {
+                return kind == PARAMETER_TYPE && ((ParameterElement) index.get(type, id)).getTypeName().equals(typeName);
+            }
+            if(type != ElementType.METHOD && type != ElementType.CONSTRUCTOR) return false;
+
+            MethodDescriptor descriptor = ((MethodElement) index.get(type, id)).getDescriptor();
+            switch (kind) {
+                case PARAMETER_TYPE:
+                    for(int parameter=0; parameter < descriptor.getParameterCount(); parameter++) {
+                        if(descriptor.getTypeName(parameter).equals(typeName)) return true;
+                    }
+                    return false;
+                case RETURN_TYPE: return descriptor.getReturnTypeName().equals(typeName);
+                default: return descriptor.getParameterCount() == parameterCount;
+            }
+        }
+
+        @Override
+        int[] lookup(ElementIndex index, ElementType type) {
+            if(type != ElementType.METHOD && type != ElementType.CONSTRUCTOR) {
+                return type == ElementType.PARAMETER ? null : new int[0];
+            }
+
+            SignatureIndex signatures = index.getSignatures();
+            int[] methods;
+            switch (kind) {
+                case PARAMETER_TYPE: methods = signatures.getParameterType(typeName); break;
+                case RETURN_TYPE: methods = signatures.getReturnType(typeName); break;
+                default: methods = signatures.getArity(parameterCount);
+            }
+            if(type == ElementType.METHOD) return methods;
+
+            ElementIndex.IdList constructors = new ElementIndex.IdList();
+            for(int method : methods) {
+                int constructor = index.getMethodConstructor(method);
+                if(constructor >= 0) constructors.add(constructor);
+            }
+            return constructors.toArray();
+        }
+
+        @Override
+        int cost() {
+            return NAME_COST;
+        }
+    }
+
+    private static final class NameCondition extends Condition {
+        private final String name;
+        private final String typeName;
+
+        private NameCondition(String name) {
+            this.name = name;
+            this.typeName = name.replace('.', '/');
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            return (type == ElementType.TYPE ? typeName : name).equals(index.get(type, id).getName());
+        }
+
+        @Override
+        int[] lookup(ElementIndex index, ElementType type) {
+            if(type != ElementType.TYPE) return null;
+            return index.getNames().getTypes(typeName);
+        }
+
+        @Override
+        int cost() {
+            return NAME_COST;
+        }
+    }
+
+    private static final class PatternCondition extends Condition {
+        private final Pattern pattern;
+
+        private PatternCondition(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            String name = type == ElementType.TYPE ? index.getType(id).getClassName() : index.get(type, id).getName();
+            return pattern.matcher(name).matches();
+        }
+
+        @Override
+        int cost() {
+            return PATTERN_COST;
+        }
+    }
+
+    private static final class PackageCondition extends Condition {
+        private final String packagePrefix;
+
+        private PackageCondition(String packageName) {
+            String internalName = packageName.replace('.', '/');
+            this.packagePrefix = internalName.endsWith("/") ? internalName : internalName + "/";
+        }
+
+        @Override
+        int[] lookup(ElementIndex index, ElementType type) {
+            if(type != ElementType.TYPE) return new DeclaredByCondition(this).lookup(index, type);
+            int[] ids = index.getNames().getPackage(packagePrefix, true);
+            Arrays.sort(ids);
+            return ids;
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            return index.getType(declaringType(index, type, id)).getName().startsWith(packagePrefix);
+        }
+
+        @Override
+        int cost() {
+            return NAME_COST;
+        }
+    }
+
+    private static final class ModifierCondition extends Condition {
+        private final int modifiers;
+        private final boolean present;
+
+        private ModifierCondition(int modifiers, boolean present) {
+            this.modifiers = modifiers;
+            this.present = present;
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            int flags = accessFlags(index.get(type, id)) & modifiers;
+            return present ? flags == modifiers : flags == 0;
+        }
+
+        @Override
+        int cost() {
+            return MODIFIER_COST;
+        }
+    }
+
+    private static final class DeclaredByCondition extends Condition {
+        private final Condition owner;
+
+        private DeclaredByCondition(Condition owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            ElementType ownerType = ElementIndex.getOwnerType(type);
+            return ownerType != null && owner.test(index, ownerType, index.getOwner(type, id));
+        }
+
+        @Override
+        int[] lookup(ElementIndex index, ElementType type) {
+            ElementType ownerType = ElementIndex.getOwnerType(type);
+            if(ownerType == null) return new int[0];
+
+            int[] owners = owner.lookup(index, ownerType);
+            if(owners == null) return null;
+
+            ElementIndex.IdList members = new ElementIndex.IdList();
+            for(int ownerId : owners) {
+                int end = index.getMemberEnd(type, ownerId);
+                for(int member = index.getMemberStart(type, ownerId); member < end; member++) {
+                    members.add(member);
+                }
+            }
+            return members.toArray();
+        }
+
+        @Override
+        int cost() {
+            return owner.cost() + RELATION_COST;
+        }
+    }
+
+    private static final class DeclaresCondition extends Condition {
+        private final ElementType memberType;
+        private final Condition member;
+
+        private DeclaresCondition(ElementType memberType, Condition member) {
+            this.memberType = memberType;
+            this.member = member;
+        }
+
+        private boolean declares(ElementType type) {
+            return type == ElementIndex.getOwnerType(memberType) ||
+                   (type == ElementType.CONSTRUCTOR && memberType == ElementType.PARAMETER);
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            if(!declares(type)) return false;
+            int ownerId = type == ElementType.CONSTRUCTOR ? index.getConstructorMethod(id) : id;
+            int end = index.getMemberEnd(memberType, ownerId);
+            for(int memberId = index.getMemberStart(memberType, ownerId); memberId < end; memberId++) {
+                if(member.test(index, memberType, memberId)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        int[] lookup(ElementIndex index, ElementType type) {
+            if(!declares(type)) return new int[0];
+
+            int[] members = member.lookup(index, memberType);
+            if(members == null) return null;
+
+            ElementIndex.IdList owners = new ElementIndex.IdList();
+            for(int memberId : members) {
+                int ownerId = index.getOwner(memberType, memberId);
+                if(type == ElementType.CONSTRUCTOR) {
+                    ownerId = index.getMethodConstructor(ownerId);
+                    if(ownerId < 0) continue;
+                }
+                if(owners.size() == 0 || owners.last() != ownerId) owners.add(ownerId);
+            }
+            return owners.toArray();
+        }
+
+        @Override
+        int cost() {
+            return member.cost() * MEMBER_FACTOR + RELATION_COST;
+        }
+    }
+
+    private static final class AndCondition extends Condition {
+        private final Condition[] conditions;
+
+        private AndCondition(Condition[] conditions) {
+            this.conditions = conditions.clone();
+            Arrays.sort(this.conditions, BY_COST);
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            for(Condition condition : conditions) {
+                if(!condition.test(index, type, id)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        int[] lookup(ElementIndex index, ElementType type) {
+            return evaluate(index, type, -1);
+        }
+
+        @Override
+        int[] select(ElementIndex index, ElementType type, int limit) {
+            int[] ids = evaluate(index, type, limit);
+            if(ids != null) return ids;
+            return scan(index, type, null, index.size(type), limit);
+        }
+
+        /**
+         * Intersects the index lookups of the conditions, then tests the remaining conditions on the candidates.
+         * Returns null when none of the conditions can be answered from the index. A negative limit tests every
+         * candidate, in parallel where worthwhile.
+         */
+        private int[] evaluate(ElementIndex index, ElementType type, int limit) {
+            List<int[]> indexed = new ArrayList<>();
+            List<Condition> remaining = new ArrayList<>();
+            for(Condition condition : conditions) {
+                int[] ids = condition.lookup(index, type);
+                if(ids != null) indexed.add(ids);
+                else remaining.add(condition);
+            }
+            if(indexed.isEmpty()) return null;
+
+            //Start from the most selective index lookup
+            indexed.sort((first, second) -> Integer.compare(first.length, second.length));
+            int[] candidates = indexed.get(0);
+            for(int i=1; i < indexed.size() && candidates.length > 0; i++) {
+                candidates = ElementIndex.intersect(candidates, indexed.get(i));
+            }
+            if(remaining.isEmpty()) {
+                return limit >= 0 && candidates.length > limit ? Arrays.copyOf(candidates, limit) : candidates;
+            }
+
+            Condition residual = remaining.size() == 1 ? remaining.get(0)
+                                                       : new AndCondition(remaining.toArray(new Condition[0]));
+            if(limit >= 0) return residual.scan(index, type, candidates, candidates.length, limit);
+            return residual.filter(index, type, candidates, candidates.length);
+        }
+
+        @Override
+        int cost() {
+            int cost = 0;
+            for(Condition condition : conditions) cost += condition.cost();
+            return cost;
+        }
+    }
+
+    private static final class OrCondition extends Condition {
+        private final Condition[] conditions;
+
+        private OrCondition(Condition[] conditions) {
+            this.conditions = conditions.clone();
+            Arrays.sort(this.conditions, BY_COST);
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            for(Condition condition : conditions) {
+                if(condition.test(index, type, id)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        int[] lookup(ElementIndex index, ElementType type) {
+            List<int[]> indexed = new ArrayList<>();
+            for(Condition condition : conditions) {
+                int[] ids = condition.lookup(index, type);
+                if(ids == null) return null;
+                indexed.add(ids);
+            }
+            return ElementIndex.union(indexed);
+        }
+
+        @Override
+        int cost() {
+            int cost = 0;
+            for(Condition condition : conditions) cost += condition.cost();
+            return cost;
+        }
+    }
+
+    private static final class NotCondition extends Condition {
+        private final Condition condition;
+
+        private NotCondition(Condition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        boolean test(ElementIndex index, ElementType type, int id) {
+            return !condition.test(index, type, id);
+        }
+
+        @Override
+        int[] lookup(ElementIndex index, ElementType type) {
+            int[] excluded = condition.lookup(index, type);
+            if(excluded == null) return null;
+
+            int size = index.size(type);
+            int[] ids = new int[size - excluded.length];
+            int count = 0;
+            int next = 0;
+            for(int id=0; id < size; id++) {
+                if(next < excluded.length && excluded[next] == id) next++;
+                else ids[count++] = id;
+            }
+            return ids;
+        }
+
+        @Override
+        int cost() {
+            return condition.cost();
+        }
+    }
+
+    /**
+     * Tests a range of candidate ids against a set of conditions, splitting the range in half until it is small
+     * enough to test directly.
+     */
+    private static final class FilterTask extends RecursiveTask<int[][]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Condition[] conditions;
+        private final ElementIndex index;
+        private final ElementType type;
+        private final int[] candidates;
+        private final int start;
+        private final int end;
+
+        private FilterTask(Condition[] conditions, ElementIndex index, ElementType type, int[] candidates,
+                           int start, int end) {
+            this.conditions = conditions;
+            this.index = index;
+            this.type = type;
+            this.candidates = candidates;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected int[][] compute() {
+            if(end - start <= SPLIT_SIZE || !inForkJoinPool()) {
+                ElementIndex.IdList[] matches = new ElementIndex.IdList[conditions.length];
+                for(int i=0; i < conditions.length; i++) matches[i] = new ElementIndex.IdList();
+                for(int position = start; position < end; position++) {
+                    int id = candidates == null ? position : candidates[position];
+                    for(int i=0; i < conditions.length; i++) {
+                        if(conditions[i].test(index, type, id)) matches[i].add(id);
+                    }
+                }
+
+                int[][] results = new int[conditions.length][];
+                for(int i=0; i < conditions.length; i++) results[i] = matches[i].toArray();
+                return results;
+            }
+
+            int middle = (start + end) >>> 1;
+            FilterTask left = new FilterTask(conditions, index, type, candidates, start, middle);
+            FilterTask right = new FilterTask(conditions, index, type, candidates, middle, end);
+            left.fork();
+            int[][] rightMatches = right.compute();
+            int[][] leftMatches = left.join();
+
+            for(int i=0; i < conditions.length; i++) {
+                int[] matches = Arrays.copyOf(leftMatches[i], leftMatches[i].length + rightMatches[i].length);
+                System.arraycopy(rightMatches[i], 0, matches, leftMatches[i].length, rightMatches[i].length);
+                leftMatches[i] = matches;
+            }
+            return leftMatches;
+        }
+    }
+}
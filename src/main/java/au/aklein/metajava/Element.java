@@ -57,6 +57,21 @@ public interface Element {
      */
     public <T extends Element> List<T> getAssociated(ElementType returnType);
 
+    /**
+     * Pass each associated Element of a specific {@link au.aklein.metajava.ElementType} to a visitor, in the order of
+     * {@link #getAssociated(ElementType)}, without creating a list of them. The walk stops as soon as the visitor
+     * returns false.
+     * @param returnType - The type of Elements to visit.
+     * @param visitor - The visitor to pass each Element to.
+     * @return - True if every associated Element was visited, or false if the visitor stopped the walk.
+     */
+    public default boolean forEachAssociated(ElementType returnType, ElementVisitor visitor) {
+        for(Element element : this.<Element>getAssociated(returnType)) {
+            if(!visitor.visit(element)) return false;
+        }
+        return true;
+    }
+
     /**
      * Static factory method for creating {@link au.aklein.metajava.AnnotationElement} objects,
      * for the purposes of comparison.
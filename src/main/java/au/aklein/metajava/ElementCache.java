@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded, thread-safe cache of the members of lazily scanned classes, for scans too large to hold every member in
+ * memory.
+ *
+ * A scan using an ElementCache keeps only the class level information of each {@link au.aklein.metajava.ClassElement}
+ * resident, as in {@link au.aklein.metajava.StorageMode#LAZY}. The methods and fields of a class are parsed from its
+ * class file when first requested and held in this cache rather than by the class. When the estimated size of the
+ * cached members exceeds the configured maximum, the members of the least recently used classes are evicted and are
+ * parsed again the next time they are requested. Member elements may therefore be different, but equal, instances
+ * across requests.
+ *
+ * @see au.aklein.metajava.MetaJava#scanClassPath(String, boolean, ElementCache)
+ */
+public final class ElementCache {
+    private static final long CLASS_BYTES = 64;
+    private static final long METHOD_BYTES = 96;
+    private static final long FIELD_BYTES = 48;
+    private static final long ANNOTATION_BYTES = 32;
+
+    private final long maximumBytes;
+    private final LinkedHashMap<ClassElement, CachedMembers> entries;
+    private long cachedBytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long reparseNanos;
+
+    private ElementCache(long maximumBytes) {
+        this.maximumBytes = maximumBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Create a new cache holding members up to an estimated total size.
+     * @param maximumBytes - the estimated size of the members to hold before evicting classes
+     * @return a new ElementCache instance
+     */
+    public static ElementCache newElementCache(long maximumBytes) {
+        return new ElementCache(maximumBytes);
+    }
+
+    /**
+     * Gets the number of classes whose members are currently cached.
+     * @return The number of classes.
+     */
+    public synchronized int getClassCount() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the estimated size of the members currently cached.
+     * @return The estimated size in bytes.
+     */
+    public synchronized long getEstimatedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Gets the number of member requests which were answered from the cache.
+     * @return The number of cache hits.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of member requests which required the class file to be parsed.
+     * @return The number of cache misses.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the proportion of member requests which were answered from the cache.
+     * @return The hit rate between 0 and 1, or 0 if no members have been requested.
+     */
+    public synchronized double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+
+    /**
+     * Gets the number of classes whose members have been evicted to stay within the maximum size.
+     * @return The number of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the total time spent parsing class files on cache misses.
+     * @return The time in nanoseconds.
+     */
+    public synchronized long getReparseNanos() {
+        return reparseNanos;
+    }
+
+    /**
+     * Gets the average time spent parsing a class file on a cache miss.
+     * @return The time in nanoseconds, or 0 if there have been no misses.
+     */
+    public synchronized long getAverageReparseNanos() {
+        return missCount == 0 ? 0 : reparseNanos / missCount;
+    }
+
+    /**
+     * Removes the members of every class from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        cachedBytes = 0;
+    }
+
+    CachedMembers getMembers(ClassElement classElement, MemberSource memberSource) {
+        synchronized (this) {
+            CachedMembers cached = entries.get(classElement);
+            if(cached != null && cached.declaringClass == classElement) {
+                hitCount++;
+                return cached;
+            }
+            missCount++;
+        }
+
+        //Classes are parsed outside the lock, so concurrent misses on the same class may each parse it
+        long start = System.nanoTime();
+        CachedMembers members = classElement.newMembers(memberSource.read(classElement));
+        long elapsed = System.nanoTime() - start;
+
+        synchronized (this) {
+            reparseNanos += elapsed;
+            CachedMembers cached = entries.get(classElement);
+            if(cached != null && cached.declaringClass == classElement) return cached;
+            //Classes are equal by name, so a class of another scan or root may hold the entry this class needs
+            if(cached != null) cachedBytes -= cached.weight;
+            entries.put(classElement, members);
+            cachedBytes += members.weight;
+            evict(members);
+        }
+        return members;
+    }
+
+    private void evict(CachedMembers keep) {
+        Iterator<Map.Entry<ClassElement, CachedMembers>> iterator = entries.entrySet().iterator();
+        while(cachedBytes > maximumBytes && iterator.hasNext()) {
+            CachedMembers eldest = iterator.next().getValue();
+            if(eldest == keep) continue;
+            cachedBytes -= eldest.weight;
+            evictionCount++;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * The methods and fields of a single class, along with an estimate of their size.
+     */
+    static final class CachedMembers {
+        private final ClassElement declaringClass;
+        private final List<MethodElement> methods;
+        private final List<FieldElement> fields;
+        private final long weight;
+
+        CachedMembers(ClassElement declaringClass, List<MethodElement> methods, List<FieldElement> fields) {
+            this.declaringClass = declaringClass;
+            this.methods = methods;
+            this.fields = fields;
+
+            long estimate = CLASS_BYTES + METHOD_BYTES * methods.size() + FIELD_BYTES * fields.size();
+            for(MethodElement method : methods) {
+                estimate += 2 * (method.getName().length() + method.getSignature().length());
+                estimate += ANNOTATION_BYTES * method.getAnnotations().size();
+            }
+            for(FieldElement field : fields) {
+                estimate += 2 * field.getName().length() + ANNOTATION_BYTES * field.getAnnotations().size();
+            }
+            this.weight = estimate;
+        }
+
+        List<MethodElement> getMethods() {
+            return methods;
+        }
+
+        List<FieldElement> getFields() {
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+/**
+ * Hash functions for the elements of a scan, whose hash codes are computed once, when each element is created.
+ *
+ * Element hash codes are built from the hash codes of their names, which are cached by the strings themselves, and
+ * of their declaring element. The combined value is passed through the finalizer of MurmurHash3, so that elements
+ * whose names differ only slightly, such as the members of one class, are spread across the buckets of a hash table.
+ */
+final class ElementHash {
+    private ElementHash() {
+    }
+
+    /**
+     * Combines the hash of one more component into a running hash.
+     * @param hash - the hash of the preceding components
+     * @param next - the hash of the next component
+     * @return the combined hash, which should be mixed before use as a hash code
+     */
+    static int combine(int hash, int next) {
+        return 31 * hash + next;
+    }
+
+    /**
+     * Spreads the bits of a combined hash, so that every input bit affects every output bit.
+     * @param hash - the combined hash
+     * @return the hash code
+     */
+    static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,622 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flattened, read-only tables of every element in a {@link au.aklein.metajava.MetaJava} instance, along with an
+ * inverted index from annotation type to the elements carrying it.
+ *
+ * Elements of each {@link au.aklein.metajava.ElementType} are numbered densely from zero. Types are numbered in scan
+ * order with inner classes following their outer class; methods, fields and parameters are numbered in the order of
+ * their declaring element. Constructors are numbered separately, but are also included in the method table. Members
+ * are stored as an owner id and an ordinal within the owner, and are only looked up when requested.
+ *
+ * The member tables are built the first time a member type is queried, so queries which only look at types do not
+ * read the members of every class, which matters for classes scanned with {@link au.aklein.metajava.StorageMode#LAZY}.
+ */
+final class ElementIndex {
+    private static final int[] NO_ELEMENTS = new int[0];
+
+    private final List<ClassElement> types;
+    private final Map<String, int[]> typeAnnotations;
+    private volatile Members members;
+    private volatile NameIndex names;
+    private volatile SignatureIndex signatures;
+    private volatile AnnotationHierarchy annotationHierarchy;
+    private final Map<String, AnnotationValueIndex> valueIndexes;
+
+    private ElementIndex(Builder builder) {
+        this.types = builder.types;
+        this.typeAnnotations = toArrays(builder.annotations.get(ElementType.TYPE));
+        this.valueIndexes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Build an index over the given classes and their inner classes.
+     * @param classes - the top level classes of a scan
+     * @return a new ElementIndex
+     */
+    static ElementIndex newElementIndex(List<ClassElement> classes) {
+        Builder builder = new Builder(ElementType.TYPE);
+        for(ClassElement classElement : classes) {
+            builder.addType(classElement);
+        }
+        return new ElementIndex(builder);
+    }
+
+    /**
+     * Gets the number of elements of the given type.
+     * @param type - the type of element
+     * @return the number of elements, or 0 if the type is not indexed
+     */
+    int size(ElementType type) {
+        switch (type) {
+            case TYPE: return types.size();
+            case METHOD: return getMembers().methodOwners.length;
+            case CONSTRUCTOR: return getMembers().constructorMethods.length;
+            case FIELD: return getMembers().fieldOwners.length;
+            case PARAMETER: return getMembers().parameterOwners.length;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Gets the element of the given type with the given id.
+     * @param type - the type of element
+     * @param id - the id of the element
+     * @return the element
+     */
+    Element get(ElementType type, int id) {
+        switch (type) {
+            case TYPE: return types.get(id);
+            case METHOD: return getMethod(id);
+            case CONSTRUCTOR: return getMethod(getConstructorMethod(id));
+            case FIELD:
+                Members fieldMembers = getMembers();
+                return types.get(fieldMembers.fieldOwners[id]).getFields().get(fieldMembers.fieldOrdinals[id]);
+            case PARAMETER:
+                Members parameterMembers = getMembers();
+                return getMethod(parameterMembers.parameterOwners[id]).getParameters()
+                                                                     .get(parameterMembers.parameterOrdinals[id]);
+            default: throw new IllegalArgumentException("Unindexed element type: "+type);
+        }
+    }
+
+    /**
+     * Gets the type with the given id.
+     * @param id - the id of the type
+     * @return the ClassElement
+     */
+    ClassElement getType(int id) {
+        return types.get(id);
+    }
+
+    /**
+     * Gets the type of element which declares elements of the given type.
+     * @param type - the type of element
+     * @return METHOD for parameters, TYPE for members, or null for types
+     */
+    static ElementType getOwnerType(ElementType type) {
+        switch (type) {
+            case METHOD:
+            case CONSTRUCTOR:
+            case FIELD: return ElementType.TYPE;
+            case PARAMETER: return ElementType.METHOD;
+            default: return null;
+        }
+    }
+
+    /**
+     * Gets the id of the element declaring the given element.
+     * @param type - the type of element
+     * @param id - the id of the element
+     * @return the id of the declaring element, of the type given by {@link #getOwnerType(ElementType)}
+     */
+    int getOwner(ElementType type, int id) {
+        switch (type) {
+            case METHOD: return getMembers().methodOwners[id];
+            case CONSTRUCTOR: return getMembers().methodOwners[getConstructorMethod(id)];
+            case FIELD: return getMembers().fieldOwners[id];
+            case PARAMETER: return getMembers().parameterOwners[id];
+            default: return -1;
+        }
+    }
+
+    /**
+     * Gets the first id of the elements of a given type declared by an owner. Members of an owner are numbered
+     * contiguously, so they lie in the range from this id up to {@link #getMemberEnd(ElementType, int)}.
+     * @param memberType - the type of the members
+     * @param ownerId - the id of the owner, of the type given by {@link #getOwnerType(ElementType)}
+     * @return the first member id
+     */
+    int getMemberStart(ElementType memberType, int ownerId) {
+        Members tables = getMembers();
+        switch (memberType) {
+            case METHOD: return lowerBound(tables.methodOwners, ownerId);
+            case CONSTRUCTOR: return lowerBound(tables.constructorMethods, lowerBound(tables.methodOwners, ownerId));
+            case FIELD: return lowerBound(tables.fieldOwners, ownerId);
+            case PARAMETER: return lowerBound(tables.parameterOwners, ownerId);
+            default: return 0;
+        }
+    }
+
+    /**
+     * Gets the id following the last element of a given type declared by an owner.
+     * @param memberType - the type of the members
+     * @param ownerId - the id of the owner, of the type given by {@link #getOwnerType(ElementType)}
+     * @return the end of the member id range
+     */
+    int getMemberEnd(ElementType memberType, int ownerId) {
+        return getMemberStart(memberType, ownerId + 1);
+    }
+
+    /**
+     * Gets the method id of a constructor.
+     * @param constructorId - the id of the constructor
+     * @return the id of the same element in the method table
+     */
+    int getConstructorMethod(int constructorId) {
+        return getMembers().constructorMethods[constructorId];
+    }
+
+    /**
+     * Gets the constructor id of a method.
+     * @param methodId - the id of the method
+     * @return the id of the same element in the constructor table, or -1 if the method is not a constructor
+     */
+    int getMethodConstructor(int methodId) {
+        int[] constructorMethods = getMembers().constructorMethods;
+        int constructorId = lowerBound(constructorMethods, methodId);
+        if(constructorId < constructorMethods.length && constructorMethods[constructorId] == methodId) {
+            return constructorId;
+        }
+        return -1;
+    }
+
+    /**
+     * Maps a set of elements to the related elements of another type. Types map to their members, members map to
+     * their declaring type, methods and constructors map to their parameters and parameters to their declaring
+     * method or constructor. Methods and constructors map to each other where they are the same element. Mapping
+     * to the same type returns a copy of the set, and unrelated types map to an empty set.
+     * @param sourceType - the type of the elements in the set
+     * @param ids - the ids of the elements
+     * @param targetType - the type of element to map to
+     * @return the ids of the related elements
+     */
+    BitSet project(ElementType sourceType, BitSet ids, ElementType targetType) {
+        if(sourceType == targetType) return (BitSet) ids.clone();
+
+        BitSet projected = new BitSet(size(targetType));
+        switch (targetType) {
+            case TYPE:
+                if(sourceType == ElementType.PARAMETER) {
+                    ids = project(sourceType, ids, ElementType.METHOD);
+                    sourceType = ElementType.METHOD;
+                }
+                if(getOwnerType(sourceType) != ElementType.TYPE) break;
+                for(int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                    projected.set(getOwner(sourceType, id));
+                }
+                break;
+            case METHOD:
+                switch (sourceType) {
+                    case TYPE: setMembers(projected, ElementType.METHOD, ids); break;
+                    case CONSTRUCTOR:
+                        for(int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                            projected.set(getConstructorMethod(id));
+                        }
+                        break;
+                    case PARAMETER:
+                        for(int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                            projected.set(getOwner(ElementType.PARAMETER, id));
+                        }
+                        break;
+                }
+                break;
+            case CONSTRUCTOR:
+                switch (sourceType) {
+                    case TYPE: setMembers(projected, ElementType.CONSTRUCTOR, ids); break;
+                    case PARAMETER: setConstructors(projected, project(sourceType, ids, ElementType.METHOD)); break;
+                    case METHOD: setConstructors(projected, ids); break;
+                }
+                break;
+            case FIELD:
+                if(sourceType == ElementType.TYPE) setMembers(projected, ElementType.FIELD, ids);
+                break;
+            case PARAMETER:
+                if(sourceType == ElementType.TYPE || sourceType == ElementType.CONSTRUCTOR) {
+                    ids = project(sourceType, ids, ElementType.METHOD);
+                    sourceType = ElementType.METHOD;
+                }
+                if(sourceType == ElementType.METHOD) setMembers(projected, ElementType.PARAMETER, ids);
+                break;
+        }
+        return projected;
+    }
+
+    private void setConstructors(BitSet constructors, BitSet methods) {
+        for(int id = methods.nextSetBit(0); id >= 0; id = methods.nextSetBit(id + 1)) {
+            int constructorId = getMethodConstructor(id);
+            if(constructorId >= 0) constructors.set(constructorId);
+        }
+    }
+
+    private void setMembers(BitSet members, ElementType memberType, BitSet owners) {
+        for(int owner = owners.nextSetBit(0); owner >= 0; owner = owners.nextSetBit(owner + 1)) {
+            int start = getMemberStart(memberType, owner);
+            int end = getMemberEnd(memberType, owner);
+            if(start < end) members.set(start, end);
+        }
+    }
+
+    /**
+     * Determines if annotation lookups are available for the given type of element.
+     * @param type - the type of element
+     * @return True if the type is indexed, otherwise false
+     */
+    boolean isIndexed(ElementType type) {
+        switch (type) {
+            case TYPE:
+            case METHOD:
+            case CONSTRUCTOR:
+            case FIELD:
+            case PARAMETER: return true;
+            default: return false;
+        }
+    }
+
+    /**
+     * Gets the ids of the elements of the given type which carry an annotation.
+     * @param type - the type of element
+     * @param annotationName - the internal name of the annotation type
+     * @return the ids of matching elements, in ascending order
+     */
+    int[] getAnnotated(ElementType type, String annotationName) {
+        Map<String, int[]> index = type == ElementType.TYPE ? typeAnnotations : getMembers().annotationIndex.get(type);
+        if(index == null) return NO_ELEMENTS;
+        int[] ids = index.get(annotationName);
+        return ids == null ? NO_ELEMENTS : ids;
+    }
+
+    /**
+     * Gets the names of the annotation types present on elements of the given type. Only the member tables are built
+     * for member types, so asking for the annotations of types does not read any members.
+     * @param type - the type of element, or a type which is not indexed for the annotations of every indexed element
+     * @return the internal names of the annotation types
+     */
+    Set<String> getAnnotationNames(ElementType type) {
+        if(type == ElementType.TYPE) return typeAnnotations.keySet();
+        Members tables = getMembers();
+        Map<String, int[]> index = tables.annotationIndex.get(type);
+        return index == null ? tables.annotationNames : index.keySet();
+    }
+
+    /**
+     * Returns the member tables, building them on first use.
+     * @return the {@link Members} of the indexed types
+     */
+    private Members getMembers() {
+        Members tables = members;
+        if(tables == null) {
+            synchronized (this) {
+                tables = members;
+                if(tables == null) {
+                    tables = new Members(types, typeAnnotations);
+                    members = tables;
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Returns the name lookups for the indexed types, building them on first use.
+     * @return the {@link au.aklein.metajava.NameIndex}
+     */
+    NameIndex getNames() {
+        NameIndex nameIndex = names;
+        if(nameIndex == null) {
+            synchronized (this) {
+                nameIndex = names;
+                if(nameIndex == null) {
+                    nameIndex = NameIndex.newNameIndex(this);
+                    names = nameIndex;
+                }
+            }
+        }
+        return nameIndex;
+    }
+
+    /**
+     * Returns the parameter type, return type and arity lookups for the indexed methods, building them on first use.
+     * @return the {@link au.aklein.metajava.SignatureIndex}
+     */
+    SignatureIndex getSignatures() {
+        SignatureIndex signatureIndex = signatures;
+        if(signatureIndex == null) {
+            synchronized (this) {
+                signatureIndex = signatures;
+                if(signatureIndex == null) {
+                    signatureIndex = SignatureIndex.newSignatureIndex(this);
+                    signatures = signatureIndex;
+                }
+            }
+        }
+        return signatureIndex;
+    }
+
+    /**
+     * Returns the meta-annotation relationships of the indexed annotations, building them on first use.
+     * @return the {@link au.aklein.metajava.AnnotationHierarchy}
+     */
+    AnnotationHierarchy getAnnotationHierarchy() {
+        AnnotationHierarchy hierarchy = annotationHierarchy;
+        if(hierarchy == null) {
+            synchronized (this) {
+                hierarchy = annotationHierarchy;
+                if(hierarchy == null) {
+                    hierarchy = AnnotationHierarchy.newAnnotationHierarchy(this);
+                    annotationHierarchy = hierarchy;
+                }
+            }
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Returns an index of the values of an annotation element, building it on first use.
+     * @param type - the type of element carrying the annotation
+     * @param annotationName - the internal name of the annotation type
+     * @param valueName - the name of the annotation element
+     * @return the {@link au.aklein.metajava.AnnotationValueIndex}
+     */
+    AnnotationValueIndex getValueIndex(ElementType type, String annotationName, String valueName) {
+        return valueIndexes.computeIfAbsent(type + " " + annotationName + " " + valueName,
+                key -> AnnotationValueIndex.newAnnotationValueIndex(this, type, annotationName, valueName));
+    }
+
+    private MethodElement getMethod(int id) {
+        Members tables = getMembers();
+        return types.get(tables.methodOwners[id]).getMethods().get(tables.methodOrdinals[id]);
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, IdList> idLists) {
+        Map<String, int[]> index = new HashMap<>();
+        for(Map.Entry<String, IdList> entry : idLists.entrySet()) {
+            index.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return index;
+    }
+
+    private static int lowerBound(int[] ascending, int key) {
+        int low = 0;
+        int high = ascending.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(ascending[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Merges ascending id arrays into a single ascending array without duplicates.
+     * @param idArrays - the arrays to merge
+     * @return the merged ids
+     */
+    static int[] union(List<int[]> idArrays) {
+        if(idArrays.isEmpty()) return NO_ELEMENTS;
+        if(idArrays.size() == 1) return idArrays.get(0);
+
+        int length = 0;
+        for(int[] ids : idArrays) length += ids.length;
+        int[] merged = new int[length];
+        int offset = 0;
+        for(int[] ids : idArrays) {
+            System.arraycopy(ids, 0, merged, offset, ids.length);
+            offset += ids.length;
+        }
+        Arrays.sort(merged);
+
+        int unique = 0;
+        for(int i=0; i < merged.length; i++) {
+            if(unique == 0 || merged[unique-1] != merged[i]) merged[unique++] = merged[i];
+        }
+        return unique == merged.length ? merged : Arrays.copyOf(merged, unique);
+    }
+
+    /**
+     * Intersects two ascending id arrays.
+     * @param first - the first array of ids
+     * @param second - the second array of ids
+     * @return the ids present in both arrays, in ascending order
+     */
+    static int[] intersect(int[] first, int[] second) {
+        int[] common = new int[Math.min(first.length, second.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while(i < first.length && j < second.length) {
+            if(first[i] < second[j]) i++;
+            else if(first[i] > second[j]) j++;
+            else {
+                common[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return count == common.length ? common : Arrays.copyOf(common, count);
+    }
+
+    /**
+     * The method, constructor, field and parameter tables, with the annotation index for each member type.
+     */
+    private static final class Members {
+        private final int[] methodOwners;
+        private final int[] methodOrdinals;
+        private final int[] constructorMethods;
+        private final int[] fieldOwners;
+        private final int[] fieldOrdinals;
+        private final int[] parameterOwners;
+        private final int[] parameterOrdinals;
+        private final Map<ElementType, Map<String, int[]>> annotationIndex;
+        private final Set<String> annotationNames;
+
+        private Members(List<ClassElement> types, Map<String, int[]> typeAnnotations) {
+            Builder builder = new Builder(ElementType.METHOD, ElementType.CONSTRUCTOR, ElementType.FIELD,
+                                          ElementType.PARAMETER);
+            for(int typeId=0; typeId < types.size(); typeId++) {
+                builder.addMembers(typeId, types.get(typeId));
+            }
+
+            this.methodOwners = builder.methodOwners.toArray();
+            this.methodOrdinals = builder.methodOrdinals.toArray();
+            this.constructorMethods = builder.constructorMethods.toArray();
+            this.fieldOwners = builder.fieldOwners.toArray();
+            this.fieldOrdinals = builder.fieldOrdinals.toArray();
+            this.parameterOwners = builder.parameterOwners.toArray();
+            this.parameterOrdinals = builder.parameterOrdinals.toArray();
+
+            this.annotationIndex = new EnumMap<>(ElementType.class);
+            this.annotationNames = new HashSet<>(typeAnnotations.keySet());
+            for(Map.Entry<ElementType, Map<String, IdList>> typeEntry : builder.annotations.entrySet()) {
+                Map<String, int[]> index = toArrays(typeEntry.getValue());
+                annotationIndex.put(typeEntry.getKey(), index);
+                annotationNames.addAll(index.keySet());
+            }
+        }
+    }
+
+    /**
+     * Accumulates element tables while walking the scanned classes. Types are walked first, numbering inner classes
+     * after their outer class, and members are walked later in type id order, so the members of each type form a
+     * contiguous range of ids.
+     */
+    private static final class Builder {
+        private final List<ClassElement> types = new ArrayList<>();
+        private final IdList methodOwners = new IdList();
+        private final IdList methodOrdinals = new IdList();
+        private final IdList constructorMethods = new IdList();
+        private final IdList fieldOwners = new IdList();
+        private final IdList fieldOrdinals = new IdList();
+        private final IdList parameterOwners = new IdList();
+        private final IdList parameterOrdinals = new IdList();
+        private final Map<ElementType, Map<String, IdList>> annotations = new EnumMap<>(ElementType.class);
+
+        private Builder(ElementType... indexedTypes) {
+            for(ElementType indexedType : indexedTypes) {
+                annotations.put(indexedType, new HashMap<>());
+            }
+        }
+
+        private void addType(ClassElement classElement) {
+            int typeId = types.size();
+            types.add(classElement);
+            addAnnotations(ElementType.TYPE, typeId, classElement.getAnnotations());
+
+            for(ClassElement innerClass : classElement.getInnerClasses()) {
+                addType(innerClass);
+            }
+        }
+
+        private void addMembers(int typeId, ClassElement classElement) {
+            List<MethodElement> methods = classElement.getMethods();
+            for(int ordinal=0; ordinal < methods.size(); ordinal++) {
+                addMethod(typeId, ordinal, methods.get(ordinal));
+            }
+
+            List<FieldElement> fields = classElement.getFields();
+            for(int ordinal=0; ordinal < fields.size(); ordinal++) {
+                int fieldId = fieldOwners.size();
+                fieldOwners.add(typeId);
+                fieldOrdinals.add(ordinal);
+                addAnnotations(ElementType.FIELD, fieldId, fields.get(ordinal).getAnnotations());
+            }
+        }
+        private void addMethod(int typeId, int ordinal, MethodElement method) {
+            int methodId = methodOwners.size();
+            methodOwners.add(typeId);
+            methodOrdinals.add(ordinal);
+            addAnnotations(ElementType.METHOD, methodId, method.getAnnotations());
+            if(method.isConstructor()) {
+                int constructorId = constructorMethods.size();
+                constructorMethods.add(methodId);
+                addAnnotations(ElementType.CONSTRUCTOR, constructorId, method.getAnnotations());
+            }
+
+            int parameterCount = method.getParameterCount();
+            for(int parameter=0; parameter < parameterCount; parameter++) {
+                int parameterId = parameterOwners.size();
+                parameterOwners.add(methodId);
+                parameterOrdinals.add(parameter);
+                List<AnnotationElement> parameterAnnotations = method.getParameterAnnotations(parameter);
+                if(parameterAnnotations != null) {
+                    addAnnotations(ElementType.PARAMETER, parameterId, parameterAnnotations);
+                }
+            }
+        }
+
+        private void addAnnotations(ElementType type, int id, List<AnnotationElement> elementAnnotations) {
+            Map<String, IdList> index = annotations.get(type);
+            for(AnnotationElement annotation : elementAnnotations) {
+                IdList ids = index.get(annotation.getName());
+                if(ids == null) {
+                    ids = new IdList();
+                    index.put(annotation.getName(), ids);
+                }
+                //Repeated annotations on the same element are only indexed once
+                if(ids.size() == 0 || ids.last() != id) ids.add(id);
+            }
+        }
+    }
+
+    /**
+     * Growable list of primitive int ids.
+     */
+    static final class IdList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if(size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int last() {
+            return ids[size-1];
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
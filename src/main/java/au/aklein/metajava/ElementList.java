@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of the elements of an {@link au.aklein.metajava.ElementIndex} with the given ids. Elements are
+ * looked up from the index as they are read.
+ */
+final class ElementList<T extends Element> extends AbstractList<T> implements RandomAccess {
+    private final ElementIndex index;
+    private final ElementType type;
+    private final int[] ids;
+
+    ElementList(ElementIndex index, ElementType type, BitSet ids) {
+        this(index, type, ids.stream().toArray());
+    }
+
+    ElementList(ElementIndex index, ElementType type, int[] ids) {
+        this.index = index;
+        this.type = type;
+        this.ids = ids;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int position) {
+        return (T) index.get(type, ids[position]);
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+}
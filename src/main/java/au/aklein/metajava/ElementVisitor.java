@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+/**
+ * Receives the elements reached while walking the relations of an element, such as the members of a class, the
+ * parameters of a method or the annotations of any element, without collecting them into a list.
+ *
+ * @see au.aklein.metajava.Element#forEachAssociated(ElementType, ElementVisitor)
+ */
+@FunctionalInterface
+public interface ElementVisitor {
+
+    /**
+     * Visit an element reached by the walk.
+     * @param element - The element reached.
+     * @return - True to continue the walk, or false to stop it.
+     */
+    public boolean visit(Element element);
+}
@@ -18,8 +18,9 @@ package au.aklein.metajava;
 
 import au.aklein.metajava.internal.FieldAttributeVisitor;
 import au.aklein.metajava.internal.FieldMethodInfo;
+import au.aklein.metajava.internal.NameTable;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -29,14 +30,33 @@ import java.util.List;
 public final class FieldElement implements Element {
     private final List<AnnotationElement> annotations;
     private final String name;
+    private final String genericSignature;
     private final short accessFlags;
     private final ClassElement declaringClass;
+    private final int hash;
 
     private FieldElement(FieldElementBuilder builder, ClassElement declaringClass) {
         this.annotations = builder.annotations;
         this.name = builder.name;
+        this.genericSignature = builder.genericSignature;
         this.accessFlags = builder.accessFlags;
         this.declaringClass = declaringClass;
+        this.hash = hash(name, declaringClass);
+    }
+
+    FieldElement(String name, String genericSignature, short accessFlags, List<AnnotationElement> annotations,
+                 ClassElement declaringClass) {
+        this.annotations = annotations;
+        this.name = name;
+        this.genericSignature = genericSignature;
+        this.accessFlags = accessFlags;
+        this.declaringClass = declaringClass;
+        this.hash = hash(name, declaringClass);
+    }
+
+    private static int hash(String name, ClassElement declaringClass) {
+        return ElementHash.mix(ElementHash.combine(name.hashCode(),
+                                                   declaringClass == null ? 0 : declaringClass.hashCode()));
     }
 
     @Override
@@ -66,24 +86,72 @@ public final class FieldElement implements Element {
     @SuppressWarnings("unchecked")
     public <T extends Element> List<T> getAssociated(ElementType returnType) {
         switch (returnType) {
-            case TYPE: return new ArrayList<T>(){{ add((T) declaringClass);}};
-            default:
-                final List<T> elements = new ArrayList<>();
-                elements.add((T) this);
-                return elements;
+            case TYPE: return Collections.singletonList((T) declaringClass);
+            case ANNOTATION: return (List<T>) annotations;
+            default: return Collections.singletonList((T) this);
+        }
+    }
+
+    @Override
+    public boolean forEachAssociated(ElementType returnType, ElementVisitor visitor) {
+        switch (returnType) {
+            case TYPE: return declaringClass == null || visitor.visit(declaringClass);
+            case ANNOTATION:
+                for(int i=0; i < annotations.size(); i++) {
+                    if(!visitor.visit(annotations.get(i))) return false;
+                }
+                return true;
+            default: return visitor.visit(this);
         }
     }
 
+    short getAccessFlags() {
+        return accessFlags;
+    }
+
     @Override
     public int hashCode() {
-        return 31*name.hashCode();
+        return hash;
     }
 
+    /**
+     * Fields are equal when they have the same name and are declared by equal classes.
+     */
     @Override
     public boolean equals(Object other) {
         if(other == this) return true;
         if (!(other instanceof FieldElement)) return false;
-        return this.name.equals(((FieldElement) other).getName());
+        FieldElement field = (FieldElement) other;
+        return hash == field.hash && name.equals(field.name) &&
+               (declaringClass == null ? field.declaringClass == null : declaringClass.equals(field.declaringClass));
+    }
+
+    /**
+     * Determines whether a field is found by this field when searching, comparing the declaring class only if this
+     * field has one.
+     * @param field - the field being searched
+     * @return true if the field matches
+     */
+    boolean matches(FieldElement field) {
+        if(declaringClass != null) return equals(field);
+        return name.equals(field.name);
+    }
+
+    /**
+     * Returns {@link au.aklein.metajava.AnnotationElement AnnotationElements} which are present on the field.
+     * @return - A list of AnnotationElements
+     */
+    public List<AnnotationElement> getAnnotations() {
+        return annotations;
+    }
+
+    /**
+     * Returns the generic signature of the field, which holds the type arguments of its type. The signature is parsed
+     * on first use and shared with every field declaring the same signature.
+     * @return - The {@link au.aklein.metajava.GenericSignature}, or null if the field's type uses no generic types
+     */
+    public GenericSignature getGenericSignature() {
+        return genericSignature == null ? null : GenericSignature.ofField(genericSignature);
     }
 
     /**
@@ -164,11 +232,14 @@ public final class FieldElement implements Element {
     static final class FieldElementBuilder {
         private final List<AnnotationElement> annotations;
         private final String name;
+        private final String genericSignature;
         private final short accessFlags;
 
-        public FieldElementBuilder(FieldMethodInfo fieldMethodInfo, FieldAttributeVisitor methodAttributes) {
+        public FieldElementBuilder(FieldMethodInfo fieldMethodInfo, FieldAttributeVisitor methodAttributes,
+                                   NameTable names) {
             this.annotations = methodAttributes.getAnnotations();
-            this.name = fieldMethodInfo.getName();
+            this.name = names.intern(fieldMethodInfo.getName());
+            this.genericSignature = names.intern(methodAttributes.getSignature());
             this.accessFlags = fieldMethodInfo.getAccessFlags();
         }
 
@@ -176,6 +247,22 @@ public final class FieldElement implements Element {
             return new FieldElement(this, declaringClass);
         }
 
+        String getName() {
+            return name;
+        }
+
+        String getGenericSignature() {
+            return genericSignature;
+        }
+
+        short getAccessFlags() {
+            return accessFlags;
+        }
+
+        List<AnnotationElement> getAnnotations() {
+            return annotations;
+        }
+
     }
 
 
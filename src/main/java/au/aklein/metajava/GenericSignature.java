@@ -0,0 +1,351 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import au.aklein.metajava.exception.ClassFileException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The parsed generic signature of a class, method or field, read from its <code>Signature</code> attribute.
+ *
+ * Signatures are parsed on first use and shared between every element with the same signature string. A class
+ * signature holds the type parameters, superclass and interfaces of the class; a method signature holds the type
+ * parameters, parameter types, return type and thrown types of the method; and a field signature holds the type of
+ * the field. Accessors for parts which do not belong to the kind of signature return null or an empty list.
+ *
+ * @see <a href="http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.7.9.1">Class File
+ * Specification, 4.7.9.1 - Signatures</a>
+ */
+public final class GenericSignature {
+    private static final int MAXIMUM_CACHED = 1 << 16;
+    private static final Map<String, GenericSignature> CLASS_SIGNATURES = new ConcurrentHashMap<>();
+    private static final Map<String, GenericSignature> METHOD_SIGNATURES = new ConcurrentHashMap<>();
+    private static final Map<String, GenericSignature> FIELD_SIGNATURES = new ConcurrentHashMap<>();
+
+    private static final int CLASS = 0;
+    private static final int METHOD = 1;
+    private static final int FIELD = 2;
+
+    private final String signature;
+    private final List<TypeParameter> typeParameters;
+    private final GenericType superclass;
+    private final List<GenericType> interfaces;
+    private final List<GenericType> parameterTypes;
+    private final GenericType returnType;
+    private final List<GenericType> exceptionTypes;
+    private final GenericType type;
+
+    private GenericSignature(String signature, int kind) {
+        this.signature = signature;
+        Parser parser = new Parser(signature);
+        try {
+            if(kind == FIELD) {
+                this.typeParameters = Collections.emptyList();
+                this.superclass = null;
+                this.interfaces = Collections.emptyList();
+                this.parameterTypes = Collections.emptyList();
+                this.returnType = null;
+                this.exceptionTypes = Collections.emptyList();
+                this.type = parser.referenceType();
+            } else if(kind == METHOD) {
+                this.typeParameters = parser.typeParameters();
+                this.superclass = null;
+                this.interfaces = Collections.emptyList();
+                this.type = null;
+
+                List<GenericType> parameters = new ArrayList<>();
+                parser.expect('(');
+                while(parser.peek() != ')') parameters.add(parser.javaType());
+                parser.expect(')');
+                this.parameterTypes = unmodifiable(parameters);
+                this.returnType = parser.javaType();
+
+                List<GenericType> exceptions = new ArrayList<>();
+                while(!parser.atEnd()) {
+                    parser.expect('^');
+                    exceptions.add(parser.referenceType());
+                }
+                this.exceptionTypes = unmodifiable(exceptions);
+            } else {
+                this.typeParameters = parser.typeParameters();
+                this.parameterTypes = Collections.emptyList();
+                this.returnType = null;
+                this.exceptionTypes = Collections.emptyList();
+                this.type = null;
+
+                this.superclass = parser.classType();
+                List<GenericType> classInterfaces = new ArrayList<>();
+                while(!parser.atEnd()) classInterfaces.add(parser.classType());
+                this.interfaces = unmodifiable(classInterfaces);
+            }
+            if(!parser.atEnd()) throw parser.invalid();
+        } catch (IndexOutOfBoundsException e) {
+            throw parser.invalid();
+        }
+    }
+
+    /**
+     * Gets the parsed form of a class signature, parsing it only if it has not been seen before.
+     * @param signature - the class signature
+     * @return the shared GenericSignature instance
+     * @throws ClassFileException if the signature is malformed
+     */
+    static GenericSignature ofClass(String signature) {
+        return of(signature, CLASS, CLASS_SIGNATURES);
+    }
+
+    /**
+     * Gets the parsed form of a method signature, parsing it only if it has not been seen before.
+     * @param signature - the method signature
+     * @return the shared GenericSignature instance
+     * @throws ClassFileException if the signature is malformed
+     */
+    static GenericSignature ofMethod(String signature) {
+        return of(signature, METHOD, METHOD_SIGNATURES);
+    }
+
+    /**
+     * Gets the parsed form of a field signature, parsing it only if it has not been seen before.
+     * @param signature - the field signature
+     * @return the shared GenericSignature instance
+     * @throws ClassFileException if the signature is malformed
+     */
+    static GenericSignature ofField(String signature) {
+        return of(signature, FIELD, FIELD_SIGNATURES);
+    }
+
+    private static GenericSignature of(String signature, int kind, Map<String, GenericSignature> cache) {
+        GenericSignature parsed = cache.get(signature);
+        if(parsed == null) {
+            parsed = new GenericSignature(signature, kind);
+            //Signatures are shared by many elements, but the cache is reset rather than grown without bound
+            if(cache.size() >= MAXIMUM_CACHED) cache.clear();
+            GenericSignature existing = cache.putIfAbsent(signature, parsed);
+            if(existing != null) parsed = existing;
+        }
+        return parsed;
+    }
+
+    /**
+     * Gets the type parameters declared by a generic class or method.
+     * @return A list of TypeParameters, empty if none are declared.
+     */
+    public List<TypeParameter> getTypeParameters() {
+        return typeParameters;
+    }
+
+    /**
+     * Gets the superclass of a class, including its type arguments.
+     * @return The superclass, or null for method and field signatures.
+     */
+    public GenericType getSuperclass() {
+        return superclass;
+    }
+
+    /**
+     * Gets the interfaces directly implemented by a class, including their type arguments.
+     * @return A list of GenericTypes, empty for method and field signatures.
+     */
+    public List<GenericType> getInterfaces() {
+        return interfaces;
+    }
+
+    /**
+     * Gets the parameter types of a method. Compilers may omit synthetic parameters from method signatures.
+     * @return A list of GenericTypes, empty for class and field signatures.
+     */
+    public List<GenericType> getParameterTypes() {
+        return parameterTypes;
+    }
+
+    /**
+     * Gets the return type of a method.
+     * @return The return type, or null for class and field signatures.
+     */
+    public GenericType getReturnType() {
+        return returnType;
+    }
+
+    /**
+     * Gets the types a method declares it throws, when any of them is a type variable.
+     * @return A list of GenericTypes, empty for class and field signatures.
+     */
+    public List<GenericType> getExceptionTypes() {
+        return exceptionTypes;
+    }
+
+    /**
+     * Gets the type of a field.
+     * @return The field type, or null for class and method signatures.
+     */
+    public GenericType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the signature as represented in the class file.
+     */
+    @Override
+    public String toString() {
+        return signature;
+    }
+
+    private static <T> List<T> unmodifiable(List<T> list) {
+        return list.isEmpty() ? Collections.<T>emptyList() : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Reads the grammar of signatures from a position within a signature string.
+     */
+    private static final class Parser {
+        private final String signature;
+        private int position;
+
+        private Parser(String signature) {
+            this.signature = signature;
+        }
+
+        private List<TypeParameter> typeParameters() {
+            if(peek() != '<') return Collections.emptyList();
+            position++;
+            List<TypeParameter> parameters = new ArrayList<>();
+            while(peek() != '>') {
+                String name = identifier();
+                expect(':');
+                GenericType classBound = peek() == ':' ? null : referenceType();
+                List<GenericType> interfaceBounds = new ArrayList<>();
+                while(peek() == ':') {
+                    position++;
+                    interfaceBounds.add(referenceType());
+                }
+                parameters.add(new TypeParameter(name, classBound, interfaceBounds));
+            }
+            position++;
+            return unmodifiable(parameters);
+        }
+
+        private GenericType javaType() {
+            switch (peek()) {
+                case 'B': position++; return GenericType.primitive("byte");
+                case 'C': position++; return GenericType.primitive("char");
+                case 'D': position++; return GenericType.primitive("double");
+                case 'F': position++; return GenericType.primitive("float");
+                case 'I': position++; return GenericType.primitive("int");
+                case 'J': position++; return GenericType.primitive("long");
+                case 'S': position++; return GenericType.primitive("short");
+                case 'Z': position++; return GenericType.primitive("boolean");
+                case 'V': position++; return GenericType.primitive("void");
+                default: return referenceType();
+            }
+        }
+
+        private GenericType referenceType() {
+            switch (peek()) {
+                case 'L': return classType();
+                case 'T':
+                    position++;
+                    String name = identifier();
+                    expect(';');
+                    return GenericType.typeVariable(name);
+                case '[':
+                    position++;
+                    return GenericType.arrayOf(javaType());
+                default: throw invalid();
+            }
+        }
+
+        private GenericType classType() {
+            expect('L');
+            String name = identifier();
+            GenericType owner = null;
+            while(true) {
+                List<GenericType> arguments = peek() == '<' ? typeArguments() : Collections.<GenericType>emptyList();
+                GenericType classType = GenericType.classType(name, arguments, owner);
+                if(peek() == ';') {
+                    position++;
+                    return classType;
+                }
+                expect('.');
+                //Owners are only kept when they carry type arguments, as the inner class name includes the outer name
+                owner = arguments.isEmpty() && owner == null ? null : classType;
+                name = name + '$' + identifier();
+            }
+        }
+
+        private List<GenericType> typeArguments() {
+            expect('<');
+            List<GenericType> arguments = new ArrayList<>();
+            while(peek() != '>') {
+                switch (peek()) {
+                    case '*':
+                        position++;
+                        arguments.add(GenericType.wildcard(null, false));
+                        break;
+                    case '+':
+                        position++;
+                        arguments.add(GenericType.wildcard(referenceType(), false));
+                        break;
+                    case '-':
+                        position++;
+                        arguments.add(GenericType.wildcard(referenceType(), true));
+                        break;
+                    default:
+                        arguments.add(referenceType());
+                }
+            }
+            position++;
+            return arguments;
+        }
+
+        /**
+         * Reads an identifier, or the package qualified name of a class, up to the next character which may not
+         * appear in one.
+         */
+        private String identifier() {
+            int start = position;
+            while(true) {
+                char next = signature.charAt(position);
+                if(next == ';' || next == '.' || next == '<' || next == '>' || next == ':') break;
+                position++;
+            }
+            if(position == start) throw invalid();
+            return signature.substring(start, position);
+        }
+
+        private char peek() {
+            return signature.charAt(position);
+        }
+
+        private boolean atEnd() {
+            return position >= signature.length();
+        }
+
+        private void expect(char expected) {
+            if(signature.charAt(position) != expected) throw invalid();
+            position++;
+        }
+
+        private ClassFileException invalid() {
+            return new ClassFileException("Invalid generic signature: "+signature);
+        }
+    }
+}
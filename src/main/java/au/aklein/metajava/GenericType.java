@@ -0,0 +1,228 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A type as written in a generic signature, such as <code>java.util.List&lt;T&gt;</code>, <code>T</code>,
+ * <code>int[]</code> or <code>? extends Number</code>.
+ *
+ * Generic types are read from the signature attributes of class files and are never resolved to loaded classes.
+ * Class types are named by their internal name, delimited by forward slashes, with inner classes named with a '$'
+ * separating them from their outer class.
+ *
+ * @see au.aklein.metajava.GenericSignature
+ */
+public final class GenericType {
+    /**
+     * The forms a generic type may take.
+     */
+    public enum Kind {
+        /** A class or interface type, which may be parameterized. */
+        CLASS,
+        /** A reference to a type parameter of the enclosing class or method. */
+        TYPE_VARIABLE,
+        /** An array type. */
+        ARRAY,
+        /** A primitive type, or <code>void</code> as a method return type. */
+        PRIMITIVE,
+        /** A wildcard type argument, optionally bounded above or below. */
+        WILDCARD
+    }
+
+    private static final List<GenericType> NO_ARGUMENTS = Collections.emptyList();
+
+    private final Kind kind;
+    private final String name;
+    private final List<GenericType> typeArguments;
+    private final GenericType ownerType;
+    private final GenericType componentType;
+    private final GenericType bound;
+    private final boolean lowerBound;
+
+    private GenericType(Kind kind, String name, List<GenericType> typeArguments, GenericType ownerType,
+                        GenericType componentType, GenericType bound, boolean lowerBound) {
+        this.kind = kind;
+        this.name = name;
+        this.typeArguments = typeArguments;
+        this.ownerType = ownerType;
+        this.componentType = componentType;
+        this.bound = bound;
+        this.lowerBound = lowerBound;
+    }
+
+    static GenericType classType(String name, List<GenericType> typeArguments, GenericType ownerType) {
+        return new GenericType(Kind.CLASS, name, typeArguments.isEmpty() ? NO_ARGUMENTS : typeArguments, ownerType,
+                               null, null, false);
+    }
+
+    static GenericType rawType(String name) {
+        return new GenericType(Kind.CLASS, name, NO_ARGUMENTS, null, null, null, false);
+    }
+
+    static GenericType typeVariable(String name) {
+        return new GenericType(Kind.TYPE_VARIABLE, name, NO_ARGUMENTS, null, null, null, false);
+    }
+
+    static GenericType arrayOf(GenericType componentType) {
+        return new GenericType(Kind.ARRAY, null, NO_ARGUMENTS, null, componentType, null, false);
+    }
+
+    static GenericType primitive(String name) {
+        return new GenericType(Kind.PRIMITIVE, name, NO_ARGUMENTS, null, null, null, false);
+    }
+
+    static GenericType wildcard(GenericType bound, boolean lowerBound) {
+        return new GenericType(Kind.WILDCARD, null, NO_ARGUMENTS, null, null, bound, lowerBound);
+    }
+
+    /**
+     * Gets the form of this type.
+     * @return The kind of type.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the name of this type: the internal name of a class type, the name of a type variable, or the keyword of
+     * a primitive type.
+     * @return The name, or null for array and wildcard types.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the type arguments of a parameterized class type.
+     * @return A list of GenericTypes, empty if the type is not parameterized.
+     */
+    public List<GenericType> getTypeArguments() {
+        return typeArguments;
+    }
+
+    /**
+     * Gets the type of the outer class of an inner class type, when the outer class is parameterized.
+     * @return The owner type, or null if the type has no parameterized owner.
+     */
+    public GenericType getOwnerType() {
+        return ownerType;
+    }
+
+    /**
+     * Gets the component type of an array type.
+     * @return The component type, or null if the type is not an array.
+     */
+    public GenericType getComponentType() {
+        return componentType;
+    }
+
+    /**
+     * Gets the bound of a wildcard type argument.
+     * @return The bound, or null if the type is not a wildcard or is unbounded.
+     */
+    public GenericType getBound() {
+        return bound;
+    }
+
+    /**
+     * Determines whether a wildcard type argument is bounded below, as in <code>? super T</code>.
+     * @return True if the wildcard has a lower bound, otherwise false.
+     */
+    public boolean isLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Replaces the type variables within this type.
+     * @param bindings - the types bound to type variable names
+     * @return this type if no type variable within it is bound, otherwise a new GenericType
+     */
+    GenericType substitute(Map<String, GenericType> bindings) {
+        if(bindings.isEmpty()) return this;
+        switch (kind) {
+            case TYPE_VARIABLE:
+                GenericType bound = bindings.get(name);
+                return bound == null ? this : bound;
+            case ARRAY:
+                GenericType component = componentType.substitute(bindings);
+                return component == componentType ? this : arrayOf(component);
+            case WILDCARD:
+                if(this.bound == null) return this;
+                GenericType wildcardBound = this.bound.substitute(bindings);
+                return wildcardBound == this.bound ? this : wildcard(wildcardBound, lowerBound);
+            case CLASS:
+                boolean changed = false;
+                List<GenericType> arguments = new ArrayList<>(typeArguments.size());
+                for(GenericType argument : typeArguments) {
+                    GenericType substituted = argument.substitute(bindings);
+                    changed |= substituted != argument;
+                    arguments.add(substituted);
+                }
+                GenericType owner = ownerType == null ? null : ownerType.substitute(bindings);
+                if(!changed && owner == ownerType) return this;
+                return classType(name, arguments, owner);
+            default:
+                return this;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, name, typeArguments, ownerType, componentType, bound, lowerBound);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(this == other) return true;
+        if(!(other instanceof GenericType)) return false;
+        GenericType type = (GenericType) other;
+        return kind == type.kind && lowerBound == type.lowerBound && Objects.equals(name, type.name)
+                && typeArguments.equals(type.typeArguments) && Objects.equals(ownerType, type.ownerType)
+                && Objects.equals(componentType, type.componentType) && Objects.equals(bound, type.bound);
+    }
+
+    /**
+     * Returns the type as it would be written in source, with fully qualified class names.
+     */
+    @Override
+    public String toString() {
+        switch (kind) {
+            case ARRAY: return componentType + "[]";
+            case WILDCARD:
+                if(bound == null) return "?";
+                return (lowerBound ? "? super " : "? extends ") + bound;
+            case CLASS:
+                StringBuilder type = new StringBuilder(name.replace('/', '.'));
+                if(!typeArguments.isEmpty()) {
+                    type.append('<');
+                    for(int i=0; i < typeArguments.size(); i++) {
+                        if(i > 0) type.append(", ");
+                        type.append(typeArguments.get(i));
+                    }
+                    type.append('>');
+                }
+                return type.toString();
+            default: return name;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import au.aklein.metajava.exception.ClassFileException;
+import au.aklein.metajava.exception.ClassPathException;
+import au.aklein.metajava.internal.ClassFileReader;
+import au.aklein.metajava.internal.NameTable;
+import au.aklein.metajava.internal.PathProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the members of classes scanned with {@link au.aklein.metajava.StorageMode#LAZY}, one instance per class path
+ * root.
+ *
+ * Lazily scanned classes keep no member data at all; the first access to their methods or fields reads their class
+ * file again. Class files in directories are read from their path. The file system of an archive is closed when its
+ * scan completes, so entries of archives are read through a {@link java.util.zip.ZipFile}. Open archives are shared by
+ * every member source, and only the most recently read are kept open; the rest are closed and opened again when next
+ * read, so scans over thousands of archives do not hold a file descriptor for each of them.
+ *
+ * Archives are only held open while they are being read from. One which has not been read for
+ * {@link #IDLE_TIMEOUT_MILLIS} is closed by a background thread, so archives are not kept open, and locked on
+ * Windows, by scans which are finished with or no longer reachable. An open archive is reused only while its size
+ * and modification time are those it had when opened; an archive rewritten since is opened again, rather than read
+ * through its old central directory.
+ */
+final class MemberSource {
+    private static final int MAXIMUM_OPEN_ARCHIVES = 64;
+    private static final long IDLE_TIMEOUT_MILLIS = 2000;
+    private static final LinkedHashMap<Path, OpenArchive> OPEN_ARCHIVES = new LinkedHashMap<>(16, 0.75f, true);
+    private static final ScheduledThreadPoolExecutor CLOSER = newCloser();
+    private static ScheduledFuture<?> idleCheck;
+
+    private final Path archive;
+    private final NameTable names;
+    private final ElementCache elementCache;
+
+    private MemberSource(Path archive, NameTable names, ElementCache elementCache) {
+        this.archive = archive;
+        this.names = names;
+        this.elementCache = elementCache;
+    }
+
+    /**
+     * Create the member source of a class path root.
+     * @param root - the class path root, a directory or a JAR file
+     * @param names - the name table of the scan, shared with the members when they are read
+     * @return a new MemberSource
+     */
+    static MemberSource newMemberSource(Path root, NameTable names) {
+        return newMemberSource(root, names, null);
+    }
+
+    /**
+     * Create the member source of a class path root whose members are held in a bounded cache rather than by their
+     * classes.
+     * @param root - the class path root, a directory or a JAR file
+     * @param names - the name table of the scan, shared with the members when they are read
+     * @param elementCache - the cache holding the members, or null for members to be kept by their classes
+     * @return a new MemberSource
+     */
+    static MemberSource newMemberSource(Path root, NameTable names, ElementCache elementCache) {
+        return new MemberSource(PathProvider.isArchive(root) ? root : null, names, elementCache);
+    }
+
+    /**
+     * Determines whether members are held in an {@link au.aklein.metajava.ElementCache}, and may be evicted and read
+     * again.
+     * @return true if the members of classes from this source are cached
+     */
+    boolean isBounded() {
+        return elementCache != null;
+    }
+
+    /**
+     * Gets the members of a class from the cache of this source, reading them again if they were evicted.
+     * @param classElement - the class to get the members of
+     * @return the methods and fields of the class
+     */
+    ElementCache.CachedMembers getCachedMembers(ClassElement classElement) {
+        return elementCache.getMembers(classElement, this);
+    }
+
+    /**
+     * Reads the class file of a lazily scanned class again, including its members.
+     * @param classElement - the class to read
+     * @return a builder holding the members of the class
+     * @throws ClassFileException if the class file can no longer be read, or no longer holds the class
+     */
+    ClassElement.ClassElementBuilder read(ClassElement classElement) {
+        Path classPath = classElement.getClassPath();
+        //Cached members are dropped on eviction, so they must not grow the table which lives as long as the scan
+        ClassFileReader classFile = ClassFileReader.newClassFileReader(isBounded() ? NameTable.newNameTable() : names);
+
+        boolean read;
+        if(archive == null) {
+            read = classFile.readClassFile(classPath, false);
+        } else {
+            OpenArchive openArchive = openArchive(archive);
+            try {
+                ZipFile zipFile = openArchive.zipFile;
+                String entryName = classPath.toString().startsWith("/") ? classPath.toString().substring(1)
+                                                                         : classPath.toString();
+                ZipEntry entry = zipFile.getEntry(entryName);
+                if(entry == null) {
+                    throw new ClassFileException("Class file no longer present: "+classPath+" in "+archive);
+                }
+                try(InputStream input = zipFile.getInputStream(entry)) {
+                    read = classFile.readClassFile(classPath, Channels.newChannel(input));
+                } catch (IOException e) {
+                    throw new ClassFileException("IOException in class file: "+classPath+" - "+e.getMessage());
+                }
+            } finally {
+                release(openArchive);
+            }
+        }
+        if(!read) throw classFile.getLastError();
+
+        ClassElement.ClassElementBuilder builder = classFile.generateClassElementBuilder();
+        if(!classElement.getName().equals(builder.getName())) {
+            throw new ClassFileException("Class file changed since it was scanned: "+classPath);
+        }
+        return builder;
+    }
+
+    private static OpenArchive openArchive(Path archive) {
+        BasicFileAttributes attributes = readAttributes(archive);
+        synchronized (OPEN_ARCHIVES) {
+            OpenArchive openArchive = OPEN_ARCHIVES.get(archive);
+            if(openArchive != null && openArchive.isCurrent(attributes)) {
+                openArchive.readers++;
+                return openArchive;
+            }
+        }
+
+        //Archives are opened outside the lock, so concurrent first reads of the same archive may each open it
+        OpenArchive opened;
+        try {
+            opened = new OpenArchive(new ZipFile(archive.toFile()), attributes);
+        } catch (IOException e) {
+            throw new ClassPathException("Unable to access JAR at: "+archive);
+        }
+
+        synchronized (OPEN_ARCHIVES) {
+            OpenArchive openArchive = OPEN_ARCHIVES.get(archive);
+            if(openArchive != null && openArchive.isCurrent(attributes)) {
+                opened.close();
+            } else {
+                if(openArchive != null) evict(openArchive);
+                openArchive = opened;
+                OPEN_ARCHIVES.put(archive, openArchive);
+                evictArchives();
+                if(idleCheck == null) {
+                    idleCheck = CLOSER.scheduleWithFixedDelay(MemberSource::closeIdleArchives, IDLE_TIMEOUT_MILLIS,
+                                                              IDLE_TIMEOUT_MILLIS / 2, TimeUnit.MILLISECONDS);
+                }
+            }
+            openArchive.readers++;
+            return openArchive;
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path archive) {
+        try {
+            return Files.readAttributes(archive, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new ClassPathException("Unable to access JAR at: "+archive);
+        }
+    }
+
+    private static void release(OpenArchive openArchive) {
+        synchronized (OPEN_ARCHIVES) {
+            openArchive.readers--;
+            openArchive.lastRead = System.nanoTime();
+            if(openArchive.evicted && openArchive.readers == 0) openArchive.close();
+        }
+    }
+
+    /**
+     * Closes the archives which have not been read from for the idle timeout, and stops checking once none are open.
+     */
+    private static void closeIdleArchives() {
+        long now = System.nanoTime();
+        synchronized (OPEN_ARCHIVES) {
+            Iterator<OpenArchive> iterator = OPEN_ARCHIVES.values().iterator();
+            while(iterator.hasNext()) {
+                OpenArchive openArchive = iterator.next();
+                if(openArchive.readers == 0 &&
+                   now - openArchive.lastRead >= TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MILLIS)) {
+                    iterator.remove();
+                    evict(openArchive);
+                }
+            }
+            if(OPEN_ARCHIVES.isEmpty() && idleCheck != null) {
+                idleCheck.cancel(false);
+                idleCheck = null;
+            }
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newCloser() {
+        ScheduledThreadPoolExecutor closer = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "metajava-archive-closer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        closer.setKeepAliveTime(IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        closer.allowCoreThreadTimeOut(true);
+        closer.setRemoveOnCancelPolicy(true);
+        return closer;
+    }
+
+    private static void evictArchives() {
+        Iterator<OpenArchive> iterator = OPEN_ARCHIVES.values().iterator();
+        while(OPEN_ARCHIVES.size() > MAXIMUM_OPEN_ARCHIVES && iterator.hasNext()) {
+            OpenArchive eldest = iterator.next();
+            iterator.remove();
+            evict(eldest);
+        }
+    }
+
+    private static void evict(OpenArchive openArchive) {
+        openArchive.evicted = true;
+        //Archives still being read from are closed by the last reader to finish
+        if(openArchive.readers == 0) openArchive.close();
+    }
+
+    /**
+     * An archive held open for reading, along with the number of reads in progress from it and the size and
+     * modification time of the file when it was opened.
+     */
+    private static final class OpenArchive {
+        private final ZipFile zipFile;
+        private final long size;
+        private final long lastModified;
+        private int readers;
+        private long lastRead;
+        private boolean evicted;
+
+        private OpenArchive(ZipFile zipFile, BasicFileAttributes attributes) {
+            this.zipFile = zipFile;
+            this.size = attributes.size();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.lastRead = System.nanoTime();
+        }
+
+        private boolean isCurrent(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+
+        private void close() {
+            try {
+                zipFile.close();
+            } catch (IOException e) {
+                throw new ClassPathException("Unable to close JAR: "+zipFile.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared storage for the members of every class in a scan, used by the storage modes which do not hold one object
+ * per member.
+ *
+ * A class refers to its members through the read-only lists returned when they are added, which create
+ * {@link au.aklein.metajava.MethodElement} and {@link au.aklein.metajava.FieldElement} objects from the store each
+ * time a member is read. Annotation lists are shared between members which carry the same annotations, and stores
+ * which hold their members in primitive form refer to them by id.
+ *
+ * Members are only added while the scan runs on a single thread. Once the scan completes the store is trimmed and is
+ * read-only from then on.
+ */
+abstract class MemberStore {
+    static final List<AnnotationElement> NO_ANNOTATIONS = Collections.emptyList();
+    static final List<List<AnnotationElement>> NO_PARAMETER_ANNOTATIONS = Collections.emptyList();
+
+    static final int NONE = 0;
+
+    private Map<List<AnnotationElement>, List<AnnotationElement>> annotationLists = new HashMap<>();
+    private Map<List<AnnotationElement>, Integer> annotationIds = new IdentityHashMap<>();
+    private final List<List<AnnotationElement>> annotationTable = new ArrayList<>();
+    private final List<List<List<AnnotationElement>>> parameterAnnotationTable = new ArrayList<>();
+
+    MemberStore() {
+        annotationTable.add(NO_ANNOTATIONS);
+        parameterAnnotationTable.add(NO_PARAMETER_ANNOTATIONS);
+        annotationIds.put(NO_ANNOTATIONS, NONE);
+    }
+
+    /**
+     * Create the store for a scan in the given mode.
+     * @param storageMode - the storage mode of the scan
+     * @return a new MemberStore, or null if the mode holds members as objects
+     */
+    static MemberStore newMemberStore(StorageMode storageMode) {
+        switch (storageMode) {
+            case COMPACT: return CompactStore.newCompactStore();
+            case OFF_HEAP: return OffHeapStore.newOffHeapStore();
+            default: return null;
+        }
+    }
+
+    /**
+     * Adds the methods of a class to the store.
+     * @param builders - the parsed methods
+     * @param declaringClass - the class declaring the methods
+     * @return a read-only list creating each method from the store as it is read
+     */
+    abstract List<MethodElement> addMethods(List<MethodElement.MethodElementBuilder> builders,
+                                            ClassElement declaringClass);
+
+    /**
+     * Adds the fields of a class to the store.
+     * @param builders - the parsed fields
+     * @param declaringClass - the class declaring the fields
+     * @return a read-only list creating each field from the store as it is read
+     */
+    abstract List<FieldElement> addFields(List<FieldElement.FieldElementBuilder> builders, ClassElement declaringClass);
+
+    /**
+     * Returns a read-only list of annotations, shared with every other element carrying the same annotations when
+     * none of them hold element values.
+     * @param annotations - the annotations
+     * @return the shared list
+     */
+    List<AnnotationElement> share(List<AnnotationElement> annotations) {
+        if(annotations.isEmpty()) return NO_ANNOTATIONS;
+        for(AnnotationElement annotation : annotations) {
+            if(!annotation.getValueNames().isEmpty()) return Collections.unmodifiableList(new ArrayList<>(annotations));
+        }
+
+        List<AnnotationElement> shared = annotationLists.get(annotations);
+        if(shared == null) {
+            shared = Collections.unmodifiableList(new ArrayList<>(annotations));
+            annotationLists.put(shared, shared);
+        }
+        return shared;
+    }
+
+    List<List<AnnotationElement>> shareParameters(List<List<AnnotationElement>> parameterAnnotations) {
+        if(parameterAnnotations.isEmpty()) return NO_PARAMETER_ANNOTATIONS;
+        List<List<AnnotationElement>> shared = new ArrayList<>(parameterAnnotations.size());
+        for(List<AnnotationElement> annotations : parameterAnnotations) {
+            shared.add(share(annotations));
+        }
+        return Collections.unmodifiableList(shared);
+    }
+
+    /**
+     * Shares a list of annotations as by {@link #share(List)} and gets its id. Equal lists without element values
+     * have the same id, and {@link #NONE} is the id of the empty list.
+     * @param annotations - the annotations
+     * @return the id of the shared list
+     */
+    int addAnnotations(List<AnnotationElement> annotations) {
+        List<AnnotationElement> shared = share(annotations);
+        Integer id = annotationIds.get(shared);
+        if(id == null) {
+            id = annotationTable.size();
+            annotationTable.add(shared);
+            annotationIds.put(shared, id);
+        }
+        return id;
+    }
+
+    /**
+     * Shares the parameter annotations of a method as by {@link #shareParameters(List)} and gets their id.
+     * @param parameterAnnotations - the annotations of each parameter
+     * @return the id of the shared lists, or {@link #NONE} if there are no parameter annotations
+     */
+    int addParameterAnnotations(List<List<AnnotationElement>> parameterAnnotations) {
+        if(parameterAnnotations.isEmpty()) return NONE;
+        parameterAnnotationTable.add(shareParameters(parameterAnnotations));
+        return parameterAnnotationTable.size() - 1;
+    }
+
+    List<AnnotationElement> getAnnotations(int id) {
+        return annotationTable.get(id);
+    }
+
+    List<List<AnnotationElement>> getParameterAnnotations(int id) {
+        return parameterAnnotationTable.get(id);
+    }
+
+    /**
+     * Releases the tables used while adding members and shrinks the storage to the members held. No further members
+     * may be added.
+     */
+    void trim() {
+        annotationLists = null;
+        annotationIds = null;
+        ((ArrayList<?>) annotationTable).trimToSize();
+        ((ArrayList<?>) parameterAnnotationTable).trimToSize();
+    }
+}
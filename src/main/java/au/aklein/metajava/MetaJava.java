@@ -17,34 +17,87 @@
 
 package au.aklein.metajava;
 
+import au.aklein.metajava.exception.ClassFileException;
 import au.aklein.metajava.exception.ClassPathException;
 import au.aklein.metajava.internal.ClassFileReader;
+import au.aklein.metajava.internal.ClassPathSpliterator;
+import au.aklein.metajava.internal.NameTable;
 import au.aklein.metajava.internal.PathProvider;
 
 import java.io.IOException;
+import java.nio.file.FileSystem;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 public final class MetaJava {
     private String packageFilter;
     private boolean ignoreErrors;
+    private ScanCache cache;
+    private StorageMode storageMode;
+    private ElementCache elementCache;
     private List<ClassElement> classes;
+    private volatile ElementIndex index;
+    private volatile TypeHierarchy hierarchy;
 
-    private MetaJava(String packageFilter, boolean ignoreErrors) {
+    private MetaJava(String packageFilter, boolean ignoreErrors, ScanCache cache, StorageMode storageMode) {
         this.packageFilter = packageFilter;
         this.ignoreErrors = ignoreErrors;
+        this.cache = cache;
+        this.storageMode = storageMode;
     }
 
-    private MetaJava scan() {
+    private MetaJava scan(ScanProgress progress) {
+        PathProvider pathProvider = PathProvider.newRootPathProvider(packageFilter);
+        List<Path> roots = pathProvider.getRootList();
+        List<ClassElement.ClassElementBuilder> builders = new ArrayList<>();
+        List<ClassElement> innerClasses = new ArrayList<>();
+        List<ClassElement> cachedClasses = new ArrayList<>();
+        NameTable names = NameTable.newNameTable();
+        MemberStore store = MemberStore.newMemberStore(storageMode);
+
+        progress.begin(roots.size());
         try {
-            PathProvider pathProvider = PathProvider.newPathProvider(packageFilter);
-            this.classes = generateClassElements(pathProvider.getPathList(), !ignoreErrors, false);
+            for(Path root : roots) {
+                MemberSource memberSource = storageMode == StorageMode.LAZY
+                        ? MemberSource.newMemberSource(root, names, elementCache) : null;
+                if(cache != null) {
+                    ScanCache.CachedRoot cachedRoot = cache.getRoot(root, rootPath -> parseRoot(rootPath, progress));
+                    filterCachedRoot(pathProvider, cachedRoot, cachedClasses);
+                } else if(PathProvider.isArchive(root)) {
+                    try(FileSystem archive = PathProvider.openArchive(root)) {
+                        for(Path archiveRoot : archive.getRootDirectories()) {
+                            readClassFiles(pathProvider.getRootPathList(archiveRoot), !ignoreErrors, false,
+                                    builders, innerClasses, names, store, memberSource, progress);
+                        }
+                    }
+                } else {
+                    readClassFiles(pathProvider.getRootPathList(root), !ignoreErrors, false,
+                            builders, innerClasses, names, store, memberSource, progress);
+                }
+                progress.rootDone();
+            }
+            this.classes = linkInnerClasses(builders, innerClasses, store);
+            if(store != null) store.trim();
+            this.classes.addAll(cachedClasses);
         } catch (IOException e) {
             throw new ClassPathException("Unable to enumerate class path");
+        } finally {
+            progress.finish();
         }
         return this;
     }
@@ -69,7 +122,111 @@ public final class MetaJava {
      * @return a new MetaJava instance
      */
     public static MetaJava scanClassPath(String packageFilter, boolean ignoreErrors) {
-        return new MetaJava(packageFilter, ignoreErrors).scan();
+        return new MetaJava(packageFilter, ignoreErrors, null, StorageMode.STANDARD).scan(new ScanProgress());
+    }
+
+    /**
+     * Scans a specified package, holding the resulting element model in the given {@link
+     * au.aklein.metajava.StorageMode}. The public API of the model is the same in every mode.
+     * @param packageFilter - the package to scan
+     * @param ignoreErrors - if set to false, any errors encountered while parsing class files will throw a {@link
+     * au.aklein.metajava.exception.ClassFileException}
+     * @param storageMode - how the element model is held in memory
+     * @return a new MetaJava instance
+     */
+    public static MetaJava scanClassPath(String packageFilter, boolean ignoreErrors, StorageMode storageMode) {
+        return new MetaJava(packageFilter, ignoreErrors, null, storageMode).scan(new ScanProgress());
+    }
+
+    /**
+     * Scans a specified package keeping only class level information resident, with the methods and fields of each
+     * class held in the given {@link au.aklein.metajava.ElementCache}. Members evicted from the cache are read again
+     * from their class files when next requested, so the memory used by the model is bounded by the cache rather than
+     * the size of the class path.
+     * @param packageFilter - the package to scan
+     * @param ignoreErrors - if set to false, any errors encountered while parsing class files will throw a {@link
+     * au.aklein.metajava.exception.ClassFileException}
+     * @param elementCache - the cache holding the members of the scanned classes
+     * @return a new MetaJava instance
+     */
+    public static MetaJava scanClassPath(String packageFilter, boolean ignoreErrors, ElementCache elementCache) {
+        MetaJava metaJava = new MetaJava(packageFilter, ignoreErrors, null, StorageMode.LAZY);
+        metaJava.elementCache = elementCache;
+        return metaJava.scan(new ScanProgress());
+    }
+
+    /**
+     * Scans a specified package, reusing class path roots already parsed by an earlier scan through the given
+     * {@link au.aklein.metajava.ScanCache}. Roots which are not yet cached are parsed in full, including classes
+     * outside of the package filter, so that later scans with a different filter can be answered from memory.
+     *
+     * @param packageFilter - the package to scan
+     * @param ignoreErrors - if set to false, any errors encountered while parsing class files will throw a {@link
+     * au.aklein.metajava.exception.ClassFileException}
+     * @param cache - the cache of parsed class path roots, such as {@link ScanCache#sharedCache()}
+     * @return a new MetaJava instance
+     */
+    public static MetaJava scanClassPath(String packageFilter, boolean ignoreErrors, ScanCache cache) {
+        return new MetaJava(packageFilter, ignoreErrors, cache, StorageMode.STANDARD).scan(new ScanProgress());
+    }
+
+    /**
+     * Scan the specified package in the background on the {@link java.util.concurrent.ForkJoinPool#commonPool()},
+     * ignoring any errors.
+     *
+     * @param packageFilter - the package to scan
+     * @return a {@link java.util.concurrent.CompletableFuture} which completes with a new MetaJava instance
+     */
+    public static CompletableFuture<MetaJava> scanClassPathAsync(String packageFilter) {
+        return scanClassPathAsync(packageFilter, true, ForkJoinPool.commonPool(), new ScanProgress());
+    }
+
+    /**
+     * Scans a specified package in the background, allowing the scan to overlap with other work. The returned future
+     * completes exceptionally with a {@link au.aklein.metajava.exception.ClassPathException} or
+     * {@link au.aklein.metajava.exception.ClassFileException} if the scan fails.
+     *
+     * @param packageFilter - the package to scan
+     * @param ignoreErrors - if set to false, any errors encountered while parsing class files will fail the scan
+     * @param executor - the {@link java.util.concurrent.Executor} to run the scan on
+     * @param progress - a {@link au.aklein.metajava.ScanProgress} instance which is updated as the scan runs
+     * @return a {@link java.util.concurrent.CompletableFuture} which completes with a new MetaJava instance
+     */
+    public static CompletableFuture<MetaJava> scanClassPathAsync(String packageFilter, boolean ignoreErrors,
+                                                                 Executor executor, ScanProgress progress) {
+        return CompletableFuture.supplyAsync(
+                () -> new MetaJava(packageFilter, ignoreErrors, null, StorageMode.STANDARD).scan(progress), executor);
+    }
+
+    /**
+     * Lazily scan the specified package, ignoring any errors.
+     *
+     * @param packageFilter - the package to scan
+     * @return a Stream of {@link au.aklein.metajava.ClassElement} objects
+     * @see #streamClassPath(String, boolean)
+     */
+    public static Stream<ClassElement> streamClassPath(String packageFilter) {
+        return streamClassPath(packageFilter, true);
+    }
+
+    /**
+     * Lazily scans a specified package based on the current system CLASSPATH. Class files are only read and parsed as
+     * the stream is consumed, so short-circuiting operations such as {@link java.util.stream.Stream#findFirst()} or
+     * {@link java.util.stream.Stream#limit(long)} stop scanning once they are satisfied. The stream may be made
+     * parallel, in which case work is split across class path roots and then across the class files within a root.
+     *
+     * Unlike {@link #scanClassPath(String, boolean)}, inner classes are returned as separate elements rather than being
+     * attached to their outer class. The stream should be closed if it is not fully consumed, to release any JAR files
+     * held open.
+     *
+     * @param packageFilter - the package to scan
+     * @param ignoreErrors - if set to false, any errors encountered while parsing class files will throw a {@link
+     * au.aklein.metajava.exception.ClassFileException}
+     * @return a Stream of {@link au.aklein.metajava.ClassElement} objects
+     */
+    public static Stream<ClassElement> streamClassPath(String packageFilter, boolean ignoreErrors) {
+        ClassPathSpliterator spliterator = ClassPathSpliterator.newClassPathSpliterator(packageFilter, !ignoreErrors);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
     }
 
     /**
@@ -78,115 +235,576 @@ public final class MetaJava {
      * @return - A new {@link au.aklein.metajava.MetaJava.MetaQuery} instance.
      */
     public MetaQuery where(ElementType elementType) {
-        return new MetaQuery(classes, elementType);
+        return new MetaQuery(this, elementType);
     }
 
-    private static List<ClassElement> generateClassElements(List<Path> filePaths,
-                                                            boolean showError,
-                                                            boolean preserveClassBuffer) {
-        List<ClassElement> classes = new ArrayList<>();
-        List<ClassElement> innerClasses = new ArrayList<>();
-        List<ClassElement.ClassElementBuilder> builders = new ArrayList<>();
+    /**
+     * Creates a batch of queries which are evaluated together.
+     * @return - A new {@link au.aklein.metajava.MetaJava.MetaBatch} instance.
+     */
+    public MetaBatch batch() {
+        return new MetaBatch(this);
+    }
+
+    /**
+     * Gets the scanned types which directly extend or implement the given type.
+     * @param typeName - the name of the class or interface, delimited by either periods or forward slashes
+     * @return A list of {@link au.aklein.metajava.ClassElement} objects
+     */
+    public List<ClassElement> getSubtypes(String typeName) {
+        return getSubtypes(typeName, false);
+    }
+
+    /**
+     * Gets the scanned types which extend or implement the given type. The type itself does not need to have been
+     * scanned.
+     * @param typeName - the name of the class or interface, delimited by either periods or forward slashes
+     * @param transitive - if true, subtypes of subtypes are also returned
+     * @return A list of {@link au.aklein.metajava.ClassElement} objects
+     */
+    public List<ClassElement> getSubtypes(String typeName, boolean transitive) {
+        return toTypes(getHierarchy().getSubtypes(internalName(typeName), transitive));
+    }
+
+    /**
+     * Gets the scanned classes, excluding interfaces, which implement the given interface.
+     * @param interfaceName - the name of the interface, delimited by either periods or forward slashes
+     * @param transitive - if true, classes which implement the interface through a superclass or a subinterface
+     *                   are also returned
+     * @return A list of {@link au.aklein.metajava.ClassElement} objects
+     */
+    public List<ClassElement> getImplementors(String interfaceName, boolean transitive) {
+        return toTypes(getHierarchy().getImplementors(internalName(interfaceName), transitive));
+    }
+
+    /**
+     * Gets the scanned classes, excluding interfaces, which implement a parameterization of the given interface, such
+     * as every implementation of <code>Handler&lt;OrderEvent&gt;</code>. Classes which implement the interface
+     * through a superclass or a subinterface are included, with type variables resolved through the generic
+     * signatures of scanned supertypes. No classes are loaded.
+     * @param interfaceName - the name of the interface, delimited by either periods or forward slashes
+     * @param typeArgumentNames - the names of the type arguments, each compared with the erasure of the argument
+     *                          given by the implementing class
+     * @return A list of {@link au.aklein.metajava.ClassElement} objects
+     */
+    public List<ClassElement> getGenericImplementors(String interfaceName, String... typeArgumentNames) {
+        List<String> typeArguments = new ArrayList<>(typeArgumentNames.length);
+        for(String typeArgumentName : typeArgumentNames) {
+            typeArguments.add(internalName(typeArgumentName));
+        }
+        return toTypes(getHierarchy().getImplementors(internalName(interfaceName), typeArguments));
+    }
+
+    /**
+     * Gets the names of the superclass and interfaces of a scanned type. Supertypes which are outside of the scanned
+     * package are included, but their own supertypes are unknown.
+     * @param typeName - the name of the class or interface, delimited by either periods or forward slashes
+     * @param transitive - if true, supertypes of supertypes are also returned
+     * @return A list of internal type names, delimited by forward slashes
+     */
+    public List<String> getSupertypes(String typeName, boolean transitive) {
+        return getHierarchy().getSupertypes(internalName(typeName), transitive);
+    }
+
+    /**
+     * Finds a scanned class or interface by name.
+     * @param typeName - the name of the type, delimited by either periods or forward slashes. Inner classes are
+     *                 named with a '$' separating them from their outer class.
+     * @return The {@link au.aklein.metajava.ClassElement}, or null if no type with the name was scanned
+     */
+    public ClassElement getClassElement(String typeName) {
+        ElementIndex elementIndex = getIndex();
+        int id = elementIndex.getNames().getType(internalName(typeName));
+        return id < 0 ? null : elementIndex.getType(id);
+    }
 
+    /**
+     * Gets the scanned types with a given simple name, in any package. The simple name of an inner class is the
+     * part of its name following the last '$', less the digits prefixed to local classes, as returned by
+     * {@link Class#getSimpleName()}. Anonymous classes are never returned.
+     * @param simpleName - the simple name of the type
+     * @return A list of {@link au.aklein.metajava.ClassElement} objects, in scan order
+     */
+    public List<ClassElement> getClassesBySimpleName(String simpleName) {
+        return toTypes(getIndex().getNames().getSimpleNamed(simpleName));
+    }
+
+    /**
+     * Gets the scanned types within a package.
+     * @param packageName - the name of the package, delimited by either periods or forward slashes
+     * @param includeSubpackages - if true, types in subpackages of the package are also returned
+     * @return A list of {@link au.aklein.metajava.ClassElement} objects, sorted by name
+     */
+    public List<ClassElement> getPackageClasses(String packageName, boolean includeSubpackages) {
+        return toTypes(getIndex().getNames().getPackage(internalName(packageName), includeSubpackages));
+    }
+
+    private TypeHierarchy getHierarchy() {
+        TypeHierarchy typeHierarchy = hierarchy;
+        if(typeHierarchy == null) {
+            synchronized (this) {
+                typeHierarchy = hierarchy;
+                if(typeHierarchy == null) {
+                    typeHierarchy = TypeHierarchy.newTypeHierarchy(getIndex());
+                    hierarchy = typeHierarchy;
+                }
+            }
+        }
+        return typeHierarchy;
+    }
+
+    private List<ClassElement> toTypes(int[] typeIds) {
+        ElementIndex elementIndex = getIndex();
+        List<ClassElement> types = new ArrayList<>(typeIds.length);
+        for(int id : typeIds) {
+            types.add(elementIndex.getType(id));
+        }
+        return types;
+    }
+
+    private static String internalName(String typeName) {
+        return typeName.replace('.', '/');
+    }
+
+    /**
+     * Returns the element tables and annotation index for this instance, building them on first use.
+     * @return the {@link au.aklein.metajava.ElementIndex}
+     */
+    ElementIndex getIndex() {
+        ElementIndex elementIndex = index;
+        if(elementIndex == null) {
+            synchronized (this) {
+                elementIndex = index;
+                if(elementIndex == null) {
+                    elementIndex = ElementIndex.newElementIndex(classes);
+                    index = elementIndex;
+                }
+            }
+        }
+        return elementIndex;
+    }
+
+    private static void readClassFiles(List<Path> filePaths,
+                                       boolean showError,
+                                       boolean preserveClassBuffer,
+                                       List<ClassElement.ClassElementBuilder> builders,
+                                       List<ClassElement> innerClasses,
+                                       NameTable names,
+                                       MemberStore store,
+                                       MemberSource memberSource,
+                                       ScanProgress progress) {
         for(Path classPath : filePaths) {
-            ClassFileReader classFile = ClassFileReader.newClassFileReader();
+            ClassFileReader classFile = ClassFileReader.newClassFileReader(names, memberSource == null);
             if(classFile.readClassFile(classPath, preserveClassBuffer)) {
-                ClassElement.ClassElementBuilder resultElement = classFile.generateClassElementBuilder();
-                if(resultElement.isInner()) innerClasses.add(resultElement.construct());
+                ClassElement.ClassElementBuilder resultElement = classFile.generateClassElementBuilder()
+                                                                          .withMemberSource(memberSource);
+                if(resultElement.isInner()) innerClasses.add(resultElement.construct(store));
                 else builders.add(resultElement);
+                progress.classParsed(classFile.getBytesRead());
             } else if(showError) {
                 throw classFile.getLastError();
             }
         }
+    }
 
-        for(ClassElement.ClassElementBuilder outer: builders) {
-            innerClasses.stream().filter(outer::hasInner).forEach(outer::addInner);
+    private static ScanCache.CachedRoot parseRoot(Path root, ScanProgress progress) {
+        PathProvider pathProvider = PathProvider.newRootPathProvider("");
+        List<ClassElement.ClassElementBuilder> builders = new ArrayList<>();
+        List<ClassElement> innerClasses = new ArrayList<>();
+        Map<Path, ClassFileException> errors = new HashMap<>();
+        NameTable names = NameTable.newNameTable();
+
+        try {
+            if(PathProvider.isArchive(root)) {
+                try(FileSystem archive = PathProvider.openArchive(root)) {
+                    for(Path archiveRoot : archive.getRootDirectories()) {
+                        readRootClassFiles(pathProvider.getRootPathList(archiveRoot), builders, innerClasses, errors,
+                                names, progress);
+                    }
+                }
+            } else {
+                readRootClassFiles(pathProvider.getRootPathList(root), builders, innerClasses, errors, names,
+                        progress);
+            }
+        } catch (IOException e) {
+            throw new ClassPathException("Unable to enumerate class path root: "+root);
         }
-        builders.forEach(builder -> { classes.add(builder.construct()); });
+        return new ScanCache.CachedRoot(linkInnerClasses(builders, innerClasses, null), errors);
+    }
+
+    private static void readRootClassFiles(List<Path> filePaths,
+                                           List<ClassElement.ClassElementBuilder> builders,
+                                           List<ClassElement> innerClasses,
+                                           Map<Path, ClassFileException> errors,
+                                           NameTable names,
+                                           ScanProgress progress) {
+        for(Path classPath : filePaths) {
+            if(!classPath.toString().endsWith(".class")) continue;
+            ClassFileReader classFile = ClassFileReader.newClassFileReader(names);
+            if(classFile.readClassFile(classPath, false)) {
+                ClassElement.ClassElementBuilder resultElement = classFile.generateClassElementBuilder();
+                if(resultElement.isInner()) innerClasses.add(resultElement.construct());
+                else builders.add(resultElement);
+                progress.classParsed(classFile.getBytesRead());
+            } else {
+                errors.put(classPath, classFile.getLastError());
+            }
+        }
+    }
+
+    private void filterCachedRoot(PathProvider pathProvider, ScanCache.CachedRoot cachedRoot,
+                                  List<ClassElement> cachedClasses) {
+        if(!ignoreErrors) {
+            for(Map.Entry<Path, ClassFileException> error : cachedRoot.getErrors().entrySet()) {
+                if(pathProvider.matchPath(error.getKey())) throw error.getValue();
+            }
+        }
+        for(ClassElement classElement : cachedRoot.getClasses()) {
+            if(pathProvider.matchPath(classElement.getClassPath())) cachedClasses.add(classElement);
+        }
+    }
+
+    private static List<ClassElement> linkInnerClasses(List<ClassElement.ClassElementBuilder> builders,
+                                                       List<ClassElement> innerClasses,
+                                                       MemberStore store) {
+        List<ClassElement> classes = new ArrayList<>();
+
+        Map<String, List<ClassElement.ClassElementBuilder>> outers = new HashMap<>(builders.size() * 2);
+        for(ClassElement.ClassElementBuilder outer : builders) {
+            outers.computeIfAbsent(outer.getName(), name -> new ArrayList<>(1)).add(outer);
+        }
+        for(ClassElement innerClass : innerClasses) {
+            ClassElement.ClassElementBuilder outer = findOuter(outers, innerClass);
+            if(outer != null) outer.addInner(innerClass);
+        }
+        builders.forEach(builder -> { classes.add(builder.construct(store)); });
 
         return classes;
     }
 
+    /**
+     * Finds the top level class enclosing an inner class, by the name of the inner class within the same directory of
+     * the same class path root. The InnerClasses attribute of a class also lists the nested classes of other classes
+     * which it only refers to, and does not always list the classes nested within its own inner classes, so it can
+     * not be used to find the enclosing class.
+     */
+    private static ClassElement.ClassElementBuilder findOuter(
+            Map<String, List<ClassElement.ClassElementBuilder>> outers, ClassElement innerClass) {
+        String name = innerClass.getName();
+        Path directory = innerClass.getClassPath() == null ? null : innerClass.getClassPath().getParent();
+        for(int end = name.lastIndexOf('$'); end > 0; end = name.lastIndexOf('$', end - 1)) {
+            List<ClassElement.ClassElementBuilder> candidates = outers.get(name.substring(0, end));
+            if(candidates == null) continue;
+            for(ClassElement.ClassElementBuilder candidate : candidates) {
+                Path outerDirectory = candidate.getClassPath() == null ? null : candidate.getClassPath().getParent();
+                if(Objects.equals(directory, outerDirectory)) return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static BitSet toBitSet(int[] ids, int size) {
+        BitSet bitSet = new BitSet(size);
+        for(int id : ids) {
+            bitSet.set(id);
+        }
+        return bitSet;
+    }
+
     /**
      * Helper class for constructing search queries.
      */
     public static final class MetaQuery {
         private final ElementType targetType;
-        private final List<ClassElement> classes;
-        private MetaQuery(List<ClassElement> classes, ElementType type) {
+        private final MetaJava metaJava;
+        private MetaQuery(MetaJava metaJava, ElementType type) {
             this.targetType = type;
-            this.classes = classes;
+            this.metaJava = metaJava;
         }
 
         /**
-         * Tests if particular Elements are contained within chosen target method.
+         * Tests if particular Elements are contained within chosen target method. Queries which only search for
+         * annotations are answered from an annotation index rather than by testing every element.
+         *
+         * Every {@link au.aklein.metajava.ElementType} other than ANNOTATION may be targeted. Constructors are
+         * included when targeting METHOD elements, and are the only elements tested when targeting CONSTRUCTOR.
          *
          * @param searchElements - The elements that will be
          * @param <MatchedElement> - The type of {@link au.aklein.metajava.Element} the target must contain.
          * @return A list of Elements
          */
-        @SuppressWarnings("unchecked")
         public <MatchedElement extends Element> MetaResult has(Element... searchElements) {
+            return matching(Condition.has(searchElements));
+        }
 
-            List<MatchedElement> found = new ArrayList<>();
-            for(ClassElement classElement : classes) {
-                switch(targetType) {
-                    case TYPE:
-                        if(testElement(classElement, searchElements)) found.add((MatchedElement) classElement);
-                        break;
-                    case METHOD:
-                        classElement.getMethods().forEach(
-                                methodElement -> {
-                                    if(testElement(methodElement, searchElements)) found.add((MatchedElement) methodElement);
-                                }
-                        );
-                        break;
-                    default: break;
-                }
-            }
+        /**
+         * Finds the target elements which satisfy a {@link au.aklein.metajava.Condition}. Parts of the condition
+         * which can be answered from an index are resolved first, and the remaining parts are tested only on the
+         * elements those lookups return.
+         *
+         * The condition is evaluated when the result is first used. Terminal operations such as
+         * {@link MetaResult#exists()} and {@link MetaResult#limit(int)} stop evaluating as soon as their answer
+         * is known.
+         *
+         * @param condition - The condition the target elements must satisfy
+         * @return A list of Elements
+         */
+        public MetaResult matching(Condition condition) {
+            return new MetaResult(metaJava.getIndex(), targetType, condition);
+        }
+    }
+
+
+    /**
+     * Helper class for evaluating many queries at once.
+     *
+     * Queries which can be answered from an index, such as annotation searches, are looked up directly in the
+     * shared annotation index. The remaining queries are grouped by target type, and each group is evaluated in a
+     * single pass over the elements of that type, testing every element against all of the group's conditions.
+     */
+    public static final class MetaBatch {
+        private final MetaJava metaJava;
+        private final List<ElementType> targetTypes;
+        private final List<Condition> conditions;
 
-            return new MetaResult(this, (List<Element>) found);
+        private MetaBatch(MetaJava metaJava) {
+            this.metaJava = metaJava;
+            this.targetTypes = new ArrayList<>();
+            this.conditions = new ArrayList<>();
         }
 
-        private boolean testElement(Element testElement, Element... searchElements) {
-            for(Element searchElement : searchElements) {
-                if(testElement.has(searchElement)) return true;
-            }
-            return false;
+        /**
+         * Adds a query for target elements which contain any of the given elements, as with
+         * {@link au.aklein.metajava.MetaJava.MetaQuery#has(Element...)}.
+         * @param targetType - The type of element being searched
+         * @param searchElements - The elements to search for
+         * @return The position of the query's result in the list returned by {@link #evaluate()}
+         */
+        public int add(ElementType targetType, Element... searchElements) {
+            return add(targetType, Condition.has(searchElements));
         }
 
+        /**
+         * Adds a query for target elements satisfying a condition, as with
+         * {@link au.aklein.metajava.MetaJava.MetaQuery#matching(Condition)}.
+         * @param targetType - The type of element being searched
+         * @param condition - The condition the target elements must satisfy
+         * @return The position of the query's result in the list returned by {@link #evaluate()}
+         */
+        public int add(ElementType targetType, Condition condition) {
+            targetTypes.add(targetType);
+            conditions.add(condition);
+            return conditions.size() - 1;
+        }
 
-    }
+        /**
+         * Evaluates every query in the batch.
+         * @return The result of each query, in the order the queries were added
+         */
+        public List<MetaResult> evaluate() {
+            ElementIndex index = metaJava.getIndex();
+            MetaResult[] results = new MetaResult[conditions.size()];
+            Map<ElementType, List<Integer>> pending = new EnumMap<>(ElementType.class);
+
+            for(int query=0; query < conditions.size(); query++) {
+                ElementType targetType = targetTypes.get(query);
+                int[] ids = conditions.get(query).lookup(index, targetType);
+                if(ids != null) {
+                    results[query] = new MetaResult(index, targetType, toBitSet(ids, index.size(targetType)));
+                } else {
+                    pending.computeIfAbsent(targetType, type -> new ArrayList<>()).add(query);
+                }
+            }
 
+            for(Map.Entry<ElementType, List<Integer>> group : pending.entrySet()) {
+                ElementType targetType = group.getKey();
+                List<Integer> queries = group.getValue();
+                Condition[] groupConditions = new Condition[queries.size()];
+                for(int i=0; i < groupConditions.length; i++) {
+                    groupConditions[i] = conditions.get(queries.get(i));
+                }
+
+                int size = index.size(targetType);
+                int[][] matches = Condition.filter(index, targetType, groupConditions, null, size);
+                for(int i=0; i < groupConditions.length; i++) {
+                    results[queries.get(i)] = new MetaResult(index, targetType, toBitSet(matches[i], size));
+                }
+            }
+
+            return Arrays.asList(results);
+        }
+    }
 
     /**
      * Helper class for manipulating results.
+     *
+     * Results hold the ids of the matched elements as a bitset over the element numbering of the scan, so combining
+     * and projecting results does not touch the elements themselves. Elements are only looked up as the lists
+     * returned by {@link #get(ElementType)} are read.
+     *
+     * Results of a query are evaluated in full the first time they are combined or read. {@link #exists()},
+     * {@link #findFirst()}, {@link #limit(int)} and {@link #count()} are answered without a full evaluation where
+     * possible.
      */
     public static final class MetaResult {
-        private final List<Element> searchElements;
+        private final ElementIndex index;
+        private final ElementType type;
+        private final Condition condition;
+        private volatile BitSet ids;
 
-        private MetaResult(MetaQuery query, List<Element> elements) {
+        private MetaResult(ElementIndex index, ElementType type, BitSet ids) {
+            this.index = index;
+            this.type = type;
+            this.condition = null;
+            this.ids = ids;
+        }
 
-            this.searchElements = elements;
+        private MetaResult(ElementIndex index, ElementType type, Condition condition) {
+            this.index = index;
+            this.type = type;
+            this.condition = condition;
         }
 
         /**
          * Returns a List of {@link au.aklein.metajava.Element} objects of a particular type,
          * based on their relationship to Elements found.
          *
+         * Requesting the queried type returns the elements found. Types relate to their methods, constructors,
+         * fields and parameters, methods and constructors to their parameters, every member to its declaring
+         * type and every element to its annotations. Elements are returned in scan order without duplicates.
+         *
          * @param returnType - The type of element being returned
          * @param <R> - The type of {@link au.aklein.metajava.Element} being returned.
          * @return A list of Elements
          */
         @SuppressWarnings("unchecked")
         public <R extends Element> List<R> get(ElementType returnType) {
-            Set<R> results = new HashSet<>();
-            for(Element element : searchElements) {
-                results.addAll(element.getAssociated(returnType));
+            BitSet ids = getIds();
+            if(returnType == ElementType.ANNOTATION) {
+                Set<R> annotations = new LinkedHashSet<>();
+                ElementVisitor collector = annotation -> {
+                    annotations.add((R) annotation);
+                    return true;
+                };
+                for(int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                    index.get(type, id).forEachAssociated(ElementType.ANNOTATION, collector);
+                }
+                return new ArrayList<>(annotations);
+            }
+            return new ElementList<>(index, returnType, index.project(type, ids, returnType));
+        }
+
+        /**
+         * Gets the number of elements found.
+         * @return The number of elements
+         */
+        public int size() {
+            return count();
+        }
+
+        /**
+         * Counts the elements found. Queries answered entirely from an index are counted from the index without
+         * creating a result set.
+         * @return The number of elements
+         */
+        public int count() {
+            BitSet found = ids;
+            if(found != null) return found.cardinality();
+            int[] indexed = condition.lookup(index, type);
+            return indexed != null ? indexed.length : getIds().cardinality();
+        }
+
+        /**
+         * Determines if any element was found, stopping at the first match.
+         * @return True if at least one element was found, otherwise false
+         */
+        public boolean exists() {
+            BitSet found = ids;
+            if(found != null) return !found.isEmpty();
+            return condition.select(index, type, 1).length > 0;
+        }
+
+        /**
+         * Finds the first element found in scan order, stopping at the first match.
+         * @param <R> - The type of {@link au.aklein.metajava.Element} being returned.
+         * @return The element, or null if no element was found
+         */
+        public <R extends Element> R findFirst() {
+            List<R> first = limit(1);
+            return first.isEmpty() ? null : first.get(0);
+        }
+
+        /**
+         * Returns the first elements found in scan order, stopping once enough have been found.
+         * @param maximum - The maximum number of elements to return
+         * @param <R> - The type of {@link au.aklein.metajava.Element} being returned.
+         * @return A list of at most the given number of Elements
+         */
+        public <R extends Element> List<R> limit(int maximum) {
+            if(maximum < 0) throw new IllegalArgumentException("Negative limit: "+maximum);
+            BitSet found = ids;
+            if(found == null) return new ElementList<>(index, type, condition.select(index, type, maximum));
+
+            int[] first = new int[Math.min(maximum, found.cardinality())];
+            int id = found.nextSetBit(0);
+            for(int i=0; i < first.length; i++, id = found.nextSetBit(id + 1)) {
+                first[i] = id;
             }
-            return new ArrayList<R>(){{addAll(results);}};
+            return new ElementList<>(index, type, first);
         }
 
+        /**
+         * Combines this result with another from the same scan. The other result is first related to the type
+         * of this result, as if by {@link #get(ElementType)}.
+         * @param other - The result to combine with
+         * @return A new result holding the elements found by either result
+         */
+        public MetaResult union(MetaResult other) {
+            BitSet combined = other.project(index, type);
+            combined.or(getIds());
+            return new MetaResult(index, type, combined);
+        }
+
+        /**
+         * Combines this result with another from the same scan. The other result is first related to the type
+         * of this result, as if by {@link #get(ElementType)}.
+         * @param other - The result to combine with
+         * @return A new result holding the elements found by both results
+         */
+        public MetaResult intersect(MetaResult other) {
+            BitSet combined = other.project(index, type);
+            combined.and(getIds());
+            return new MetaResult(index, type, combined);
+        }
+
+        /**
+         * Removes the elements found by another result from the same scan. The other result is first related to
+         * the type of this result, as if by {@link #get(ElementType)}.
+         * @param other - The result whose elements are removed
+         * @return A new result holding the elements found only by this result
+         */
+        public MetaResult subtract(MetaResult other) {
+            BitSet combined = (BitSet) getIds().clone();
+            combined.andNot(other.project(index, type));
+            return new MetaResult(index, type, combined);
+        }
+
+        private BitSet project(ElementIndex target, ElementType targetType) {
+            if(target != index) throw new IllegalArgumentException("Results belong to different scans");
+            if(targetType == ElementType.ANNOTATION || type == ElementType.ANNOTATION) {
+                throw new IllegalArgumentException("Annotation results can not be combined");
+            }
+            return index.project(type, getIds(), targetType);
+        }
+
+        private BitSet getIds() {
+            BitSet found = ids;
+            if(found == null) {
+                found = toBitSet(condition.select(index, type), index.size(type));
+                ids = found;
+            }
+            return found;
+        }
     }
 
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import au.aklein.metajava.exception.ClassFileException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The parsed parameter and return types of a method descriptor.
+ *
+ * Descriptors are parsed once per distinct descriptor string and shared between every method with that descriptor.
+ * Types are held both in the form used by {@link au.aklein.metajava.ParameterElement}, a base descriptor type and
+ * an array dimension count, and as names in the format of {@link java.lang.Class#getName()}.
+ *
+ * @see <a href="http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.3.3">Class File
+ * Specification, 4.3.3 - Method Descriptors</a>
+ */
+final class MethodDescriptor {
+    private static final int MAXIMUM_CACHED = 1 << 16;
+    private static final Map<String, MethodDescriptor> CACHE = new ConcurrentHashMap<>();
+
+    private final String[] baseTypes;
+    private final int[] dimensions;
+    private final String[] typeNames;
+    private final String returnTypeName;
+
+    private MethodDescriptor(String descriptor) {
+        List<String> parameterBaseTypes = new ArrayList<>();
+        List<Integer> parameterDimensions = new ArrayList<>();
+
+        int index = 1;
+        while(index < descriptor.length() && descriptor.charAt(index) != ')') {
+            int start = index;
+            while(descriptor.charAt(index) == '[') index++;
+            int typeStart = index;
+            index = typeEnd(descriptor, index);
+            parameterBaseTypes.add(descriptor.substring(typeStart, index));
+            parameterDimensions.add(typeStart - start);
+        }
+        if(index >= descriptor.length()) throw new ClassFileException("Invalid method descriptor: "+descriptor);
+
+        int count = parameterBaseTypes.size();
+        this.baseTypes = parameterBaseTypes.toArray(new String[count]);
+        this.dimensions = new int[count];
+        this.typeNames = new String[count];
+        for(int i=0; i < count; i++) {
+            dimensions[i] = parameterDimensions.get(i);
+            typeNames[i] = typeName(baseTypes[i], dimensions[i]);
+        }
+
+        int returnStart = index + 1;
+        int returnBase = returnStart;
+        while(returnBase < descriptor.length() && descriptor.charAt(returnBase) == '[') returnBase++;
+        this.returnTypeName = typeName(descriptor.substring(returnBase), returnBase - returnStart);
+    }
+
+    /**
+     * Gets the parsed form of a method descriptor, parsing it only if it has not been seen before.
+     * @param descriptor - the method descriptor
+     * @return the shared MethodDescriptor instance
+     */
+    static MethodDescriptor of(String descriptor) {
+        MethodDescriptor parsed = CACHE.get(descriptor);
+        if(parsed == null) {
+            parsed = new MethodDescriptor(descriptor);
+            //Descriptors are shared by many classes, but the cache is reset rather than grown without bound
+            if(CACHE.size() >= MAXIMUM_CACHED) CACHE.clear();
+            MethodDescriptor existing = CACHE.putIfAbsent(descriptor, parsed);
+            if(existing != null) parsed = existing;
+        }
+        return parsed;
+    }
+
+    int getParameterCount() {
+        return baseTypes.length;
+    }
+
+    /**
+     * Gets the base type of a parameter, excluding any array dimensions, such as <code>I</code> or
+     * <code>Ljava/lang/String;</code>.
+     */
+    String getBaseType(int parameter) {
+        return baseTypes[parameter];
+    }
+
+    int getDimensions(int parameter) {
+        return dimensions[parameter];
+    }
+
+    /**
+     * Gets the type name of a parameter, such as <code>int</code>, <code>java.lang.String</code> or
+     * <code>[Ljava.lang.String;</code>.
+     */
+    String getTypeName(int parameter) {
+        return typeNames[parameter];
+    }
+
+    /**
+     * Gets the type name of the return type, or <code>void</code>.
+     */
+    String getReturnTypeName() {
+        return returnTypeName;
+    }
+
+    /**
+     * Create the parameter elements of a method with this descriptor.
+     * @param declaringMethod - the method declaring the parameters
+     * @return a new list of ParameterElements
+     */
+    List<ParameterElement> newParameters(MethodElement declaringMethod) {
+        List<ParameterElement> parameters = new ArrayList<>(baseTypes.length);
+        for(int i=0; i < baseTypes.length; i++) {
+            List<AnnotationElement> annotations = declaringMethod.getParameterAnnotations(i);
+            if(annotations == null) annotations = Collections.emptyList();
+            parameters.add(new ParameterElement(baseTypes[i], dimensions[i], annotations, declaringMethod, i));
+        }
+        return parameters;
+    }
+
+    private static int typeEnd(String descriptor, int index) {
+        if(descriptor.charAt(index) != 'L') return index + 1;
+        int end = descriptor.indexOf(';', index);
+        if(end < 0) throw new ClassFileException("Invalid method descriptor: "+descriptor);
+        return end + 1;
+    }
+
+    private static String typeName(String baseType, int dimensions) {
+        if(dimensions > 0) {
+            StringBuilder arrayName = new StringBuilder();
+            for(int i=0; i < dimensions; i++) arrayName.append('[');
+            return arrayName.append(baseType.replace('/', '.')).toString();
+        }
+        switch (baseType.charAt(0)) {
+            case 'B': return "byte";
+            case 'C': return "char";
+            case 'D': return "double";
+            case 'F': return "float";
+            case 'I': return "int";
+            case 'J': return "long";
+            case 'S': return "short";
+            case 'Z': return "boolean";
+            case 'V': return "void";
+            default: return baseType.substring(1, baseType.length() - 1).replace('/', '.');
+        }
+    }
+}
@@ -18,12 +18,11 @@ package au.aklein.metajava;
 
 import au.aklein.metajava.internal.FieldMethodInfo;
 import au.aklein.metajava.internal.MethodAttributeVisitor;
+import au.aklein.metajava.internal.NameTable;
 
 import java.lang.invoke.MethodHandle;
-import java.lang.invoke.MethodHandles;
-import java.lang.invoke.MethodType;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -35,19 +34,37 @@ import java.util.List;
 public final class MethodElement implements Element {
     private final List<AnnotationElement> annotations;
     private final List<List<AnnotationElement>> parameterAnnotations;
-    private List<ParameterElement> parameters;
+    private volatile List<ParameterElement> parameters;
+    private volatile MethodDescriptor descriptor;
     private final String signature;
+    private final String genericSignature;
     private final String name;
     private final short accessFlags;
     private final ClassElement declaringClass;
+    private final int hash;
 
     private MethodElement(MethodElementBuilder builder, ClassElement declaringClass) {
         this.annotations = builder.annotations;
         this.parameterAnnotations = builder.parameterAnnotations;
         this.name = builder.name;
         this.signature = builder.signature;
+        this.genericSignature = builder.genericSignature;
         this.accessFlags = builder.accessFlags;
         this.declaringClass = declaringClass;
+        this.hash = hash(name, signature, declaringClass);
+    }
+
+    MethodElement(String name, String signature, String genericSignature, short accessFlags,
+                  List<AnnotationElement> annotations, List<List<AnnotationElement>> parameterAnnotations,
+                  ClassElement declaringClass) {
+        this.annotations = annotations;
+        this.parameterAnnotations = parameterAnnotations;
+        this.name = name;
+        this.signature = signature;
+        this.genericSignature = genericSignature;
+        this.accessFlags = accessFlags;
+        this.declaringClass = declaringClass;
+        this.hash = hash(name, signature, declaringClass);
     }
 
     public MethodElement(String methodName, String signature) {
@@ -55,8 +72,15 @@ public final class MethodElement implements Element {
         this.parameterAnnotations = new ArrayList<>();
         this.name = methodName;
         this.signature = signature;
+        this.genericSignature = null;
         this.accessFlags = 0;
         this.declaringClass = null;
+        this.hash = hash(name, signature, null);
+    }
+
+    private static int hash(String name, String signature, ClassElement declaringClass) {
+        int hash = ElementHash.combine(name.hashCode(), signature.hashCode());
+        return ElementHash.mix(ElementHash.combine(hash, declaringClass == null ? 0 : declaringClass.hashCode()));
     }
 
     /**
@@ -64,10 +88,44 @@ public final class MethodElement implements Element {
      * @return - A list of {@link au.aklein.metajava.ParameterElement} objects.
      */
     public List<ParameterElement> getParameters() {
-        if(parameters==null) parameters = SignatureParser.getParameters(signature, this);
+        if(parameters==null) parameters = getDescriptor().newParameters(this);
         return parameters;
     }
 
+    /**
+     * Return the number of parameters declared by the method's descriptor, without creating any
+     * {@link au.aklein.metajava.ParameterElement} objects.
+     * @return - The number of parameters.
+     */
+    public int getParameterCount() {
+        if(parameters != null) return parameters.size();
+        return getDescriptor().getParameterCount();
+    }
+
+    /**
+     * Return the name of the method's return type, in the format of {@link java.lang.Class#getName()}.
+     * @return - The return type name, or "void"
+     */
+    public String getReturnTypeName() {
+        return getDescriptor().getReturnTypeName();
+    }
+
+    /**
+     * Returns the parsed descriptor of the method, shared with every other method with the same descriptor.
+     */
+    MethodDescriptor getDescriptor() {
+        if(descriptor == null) descriptor = MethodDescriptor.of(signature);
+        return descriptor;
+    }
+
+    /**
+     * Returns {@link au.aklein.metajava.AnnotationElement AnnotationElements} which are present on the method.
+     * @return - A list of AnnotationElements
+     */
+    public List<AnnotationElement> getAnnotations() {
+        return annotations;
+    }
+
     /**
      * Return the method signature as represented in the class file.
      * @return - The method signature as a String
@@ -79,6 +137,17 @@ public final class MethodElement implements Element {
         return signature;
     }
 
+    /**
+     * Returns the generic signature of the method, which includes its type parameters and the type arguments of its
+     * parameter and return types. The signature is parsed on first use and shared with every method declaring the
+     * same signature.
+     * @return - The {@link au.aklein.metajava.GenericSignature}, or null if the method's signature uses no generic
+     * types
+     */
+    public GenericSignature getGenericSignature() {
+        return genericSignature == null ? null : GenericSignature.ofMethod(genericSignature);
+    }
+
     /**
      * Returns the {@link au.aklein.metajava.ClassElement} representing the type which has declared this method.
      * @return - A {@link au.aklein.metajava.ClassElement} object of the declaring type.
@@ -102,7 +171,7 @@ public final class MethodElement implements Element {
                 break;
             case PARAMETER:
                 for(ParameterElement parameterElement : getParameters()) {
-                    if(element.equals(parameterElement)) return true;
+                    if(((ParameterElement) element).matches(parameterElement)) return true;
                 }
                 break;
             default: return false;
@@ -119,35 +188,74 @@ public final class MethodElement implements Element {
     @SuppressWarnings("unchecked")
     public <T extends Element> List<T> getAssociated(ElementType returnType) {
         switch (returnType) {
-            case TYPE: return new ArrayList<T>(){{ add((T) declaringClass);}};
-            case PARAMETER: return (List<T>) parameters;
-            default:
-                final List<T> elements = new ArrayList<>();
-                elements.add((T) this);
-                return elements;
+            case TYPE: return Collections.singletonList((T) declaringClass);
+            case PARAMETER: return (List<T>) getParameters();
+            case ANNOTATION: return (List<T>) annotations;
+            default: return Collections.singletonList((T) this);
+        }
+    }
+
+    @Override
+    public boolean forEachAssociated(ElementType returnType, ElementVisitor visitor) {
+        List<? extends Element> associated;
+        switch (returnType) {
+            case TYPE: return declaringClass == null || visitor.visit(declaringClass);
+            case PARAMETER: associated = getParameters(); break;
+            case ANNOTATION: associated = annotations; break;
+            default: return visitor.visit(this);
         }
+        for(int i=0; i < associated.size(); i++) {
+            if(!visitor.visit(associated.get(i))) return false;
+        }
+        return true;
+    }
+
+    short getAccessFlags() {
+        return accessFlags;
     }
 
     @Override
     public int hashCode() {
-        return 31*name.hashCode()*signature.hashCode();
+        return hash;
     }
 
+    /**
+     * Methods are equal when they have the same name and descriptor and are declared by equal classes. Methods
+     * created for comparison have no declaring class, and only equal other such methods; use
+     * {@link #has(Element)} on a class to find a method by name and descriptor alone.
+     */
     @Override
     public boolean equals(Object other) {
         if(other == this) return true;
         if(!(other instanceof MethodElement)) return false;
-        return name.equals(((MethodElement) other).getName()) &&
-               signature.equals(((MethodElement) other).getSignature());
+        MethodElement method = (MethodElement) other;
+        return hash == method.hash && name.equals(method.name) && signature.equals(method.signature) &&
+               (declaringClass == null ? method.declaringClass == null : declaringClass.equals(method.declaringClass));
+    }
+
+    /**
+     * Determines whether a method is found by this method when searching, comparing the declaring class only if
+     * this method has one.
+     * @param method - the method being searched
+     * @return true if the method matches
+     */
+    boolean matches(MethodElement method) {
+        if(declaringClass != null) return equals(method);
+        return name.equals(method.name) && signature.equals(method.signature);
     }
 
+    /**
+     * Returns a method handle for the method, after loading its declaring class with the specified
+     * {@link ClassLoader}. Classes and handles are cached, so resolving the same method again is cheap, without
+     * keeping the class loader from being unloaded.
+     * @param classLoader - The ClassLoader to load the declaring class with
+     * @return - A MethodHandle for the method
+     * @throws NoSuchMethodException if the loaded class does not have the method
+     * @throws IllegalAccessException if the method is not accessible
+     * @throws ClassNotFoundException if the declaring class cannot be loaded
+     */
     public MethodHandle getMethodHandle(ClassLoader classLoader) throws NoSuchMethodException, IllegalAccessException, ClassNotFoundException {
-        MethodType type = MethodType.fromMethodDescriptorString(signature, classLoader);
-        if(this.isStatic()) {
-            return MethodHandles.lookup().findStatic(declaringClass.getClassType(classLoader), name, type);
-        } else {
-            return MethodHandles.lookup().findVirtual(declaringClass.getClassType(classLoader), name, type);
-        }
+        return ReflectionCache.findMethod(declaringClass.getClassType(classLoader), name, signature, isStatic());
     }
 
 
@@ -248,6 +356,18 @@ public final class MethodElement implements Element {
         return (accessFlags & 0x1000) != 0;
     }
 
+    /**
+     * Returns the annotations on a single parameter. Compilers may omit synthetic leading parameters, such as the
+     * outer instance of an inner class constructor, from the parameter annotations attribute, so annotations are
+     * aligned with the last parameters of the descriptor.
+     */
+    List<AnnotationElement> getParameterAnnotations(int parameter) {
+        if(parameterAnnotations.isEmpty()) return null;
+        int annotated = parameter - Math.max(0, getParameterCount() - parameterAnnotations.size());
+        if(annotated < 0 || annotated >= parameterAnnotations.size()) return null;
+        return parameterAnnotations.get(annotated);
+    }
+
     /**
      * Builder class ensuring the MethodElement class is initialised with a fully resolved declaring class
      */
@@ -255,155 +375,47 @@ public final class MethodElement implements Element {
         private final List<AnnotationElement> annotations;
         private final List<List<AnnotationElement>> parameterAnnotations;
         private final String signature;
+        private final String genericSignature;
         private final String name;
         private final short accessFlags;
 
         public MethodElementBuilder(FieldMethodInfo fieldMethodInfo,
-                                    MethodAttributeVisitor methodAttributes) {
+                                    MethodAttributeVisitor methodAttributes,
+                                    NameTable names) {
             this.annotations = methodAttributes.getAnnotations();
             this.parameterAnnotations = methodAttributes.getParameterAnnotations();
-            this.name = fieldMethodInfo.getName();
-            this.signature = fieldMethodInfo.getDesc();
+            this.name = names.intern(fieldMethodInfo.getName());
+            this.signature = names.intern(fieldMethodInfo.getDesc());
+            this.genericSignature = names.intern(methodAttributes.getSignature());
             this.accessFlags = fieldMethodInfo.getAccessFlags();
         }
 
         public MethodElement build(ClassElement declaringClass) {
             return new MethodElement(this, declaringClass);
         }
-    }
-
-
-
-    /**
-     *  Helper inner class to parse method signatures and generate appropriate {@link au.aklein.metajava
-     *  .ParameterElement} objects
-     */
-    private static final class SignatureParser {
-        private final char[] signature;
-        private final int parameterEnd;
 
-        private SignatureParser(String signature) {
-            this.signature = signature.toCharArray();
-            this.parameterEnd = parameterLength(this.signature);
+        String getName() {
+            return name;
         }
 
-        public static List<ParameterElement> getReturnValue(String sig) {
-            return new SignatureParser(sig).parseReturnValue();
+        String getSignature() {
+            return signature;
         }
 
-        public static List<ParameterElement> getParameters(String sig, MethodElement declaringMethod) {
-            return new SignatureParser(sig).parseParameters(declaringMethod);
+        String getGenericSignature() {
+            return genericSignature;
         }
 
-        private List<ParameterElement> parseReturnValue() {
-            char[] returnDesc = Arrays.copyOfRange(signature, parameterEnd, signature.length);
-            return parse(returnDesc, null);
+        short getAccessFlags() {
+            return accessFlags;
         }
 
-        private List<ParameterElement> parseParameters(MethodElement declaringMethod) {
-            char[] parameters = Arrays.copyOfRange(signature, 1, parameterEnd);
-            return parse(parameters, declaringMethod);
+        List<AnnotationElement> getAnnotations() {
+            return annotations;
         }
 
-        private List<ParameterElement> parse(char[] descriptors, MethodElement declaringMethod) {
-            List<List<AnnotationElement>> parameterAnnotations = declaringMethod.parameterAnnotations;
-            List<ParameterElement> signatureObjects = new ArrayList<>();
-            int index=0;
-            int param=0;
-            while(index < descriptors.length) {
-                Descriptor parameter = Descriptor.newDescriptor(descriptors, index);
-
-                List<AnnotationElement> annotations = new ArrayList<>();
-                if(parameterAnnotations.size()!=0) {
-                    annotations = parameterAnnotations.get(param);
-                }
-                signatureObjects.add(new ParameterElement(parameter.getType(), parameter.getDimensions(),
-                        annotations, declaringMethod));
-                index = parameter.getIndex();
-                param++;
-            }
-            return signatureObjects;
-        }
-
-
-        private int parameterLength(char[] signature) {
-            int parameterEnd = 0;
-            while(signature[parameterEnd] != ')') parameterEnd++;
-            return parameterEnd;
-        }
-
-        /**
-         * An individual descriptor element (Paramater Descriptor/Return Descriptor)
-         */
-        private static final class Descriptor {
-            private int dimensions;
-            private String type;
-            private final char[] desc;
-            private int index;
-
-            private Descriptor(char[] desc, int index) {
-                this.desc = desc;
-                this.index = index;
-            }
-
-            public static Descriptor newDescriptor(char[] desc, int index) {
-                Descriptor descriptor = new Descriptor(desc, index);
-                descriptor.parse();
-                return descriptor;
-            }
-
-            public String getType() {
-                return type;
-            }
-
-            public int getDimensions() {
-                return dimensions;
-            }
-
-            public int getIndex() {
-                return index;
-            }
-
-            private void parse() {
-                type = parseBaseType(0);
-            }
-
-
-            private String parseBaseType(int dim) {
-                dimensions = dim;
-                switch(desc[index]) {
-                    case 'B':
-                    case 'C':
-                    case 'D':
-                    case 'F':
-                    case 'I':
-                    case 'J':
-                    case 'S':
-                    case 'Z':
-                    case 'V':
-                        String type = String.valueOf(desc[index]);
-                        index++;
-                        return type;
-                    case 'L': return parseObjectType();
-                    case '[': return parseArrayType(dim+1);
-                    default: return null;
-                }
-            }
-
-            private String parseArrayType(int dim) {
-                index++;
-                switch(desc[index]) {
-                    case '[': return parseArrayType(dim+1);
-                    default: return parseBaseType(dim);
-                }
-            }
-
-            private String parseObjectType() {
-                int classIndex = index;
-                while (desc[index] != ';') index++;
-                index++;
-                return String.copyValueOf(Arrays.copyOfRange(desc, classIndex, index));
-            }
+        List<List<AnnotationElement>> getParameterAnnotations() {
+            return parameterAnnotations;
         }
     }
 }
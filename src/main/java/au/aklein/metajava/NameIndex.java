@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lookups of the types of an {@link au.aklein.metajava.ElementIndex} by name.
+ *
+ * Exact and simple names are held in hash tables. Type ids are also kept sorted by internal name, so the types of a
+ * package and its subpackages form a contiguous range which is found by binary search on the package prefix.
+ */
+final class NameIndex {
+    private static final int[] NO_TYPES = new int[0];
+
+    private final Map<String, int[]> nameIds;
+    private final Map<String, int[]> simpleNameIds;
+    private final String[] sortedNames;
+    private final int[] sortedIds;
+
+    private NameIndex(ElementIndex index) {
+        int typeCount = index.size(ElementType.TYPE);
+        Map<String, ElementIndex.IdList> names = new HashMap<>(typeCount * 2);
+        Map<String, ElementIndex.IdList> simpleNames = new HashMap<>();
+        Integer[] order = new Integer[typeCount];
+        for(int id=0; id < typeCount; id++) {
+            ClassElement type = index.getType(id);
+            String name = type.getName();
+            names.computeIfAbsent(name, typeName -> new ElementIndex.IdList()).add(id);
+            if(!type.isAnonymous()) {
+                simpleNames.computeIfAbsent(getSimpleName(name), simpleName -> new ElementIndex.IdList()).add(id);
+            }
+            order[id] = id;
+        }
+
+        this.nameIds = toArrays(names);
+        this.simpleNameIds = toArrays(simpleNames);
+
+        Arrays.sort(order, (first, second) -> index.getType(first).getName().compareTo(index.getType(second).getName()));
+        this.sortedNames = new String[typeCount];
+        this.sortedIds = new int[typeCount];
+        for(int position=0; position < typeCount; position++) {
+            sortedIds[position] = order[position];
+            sortedNames[position] = index.getType(order[position]).getName();
+        }
+    }
+
+    /**
+     * Build a name index over the types held by an element index.
+     * @param index - the element index
+     * @return a new NameIndex
+     */
+    static NameIndex newNameIndex(ElementIndex index) {
+        return new NameIndex(index);
+    }
+
+    /**
+     * Gets the type with the given name. Where the same name was scanned from more than one class path entry, this
+     * is the first one scanned.
+     * @param name - the internal name of the type
+     * @return the id of the type, or -1 if no type with the name was scanned
+     */
+    int getType(String name) {
+        int[] ids = nameIds.get(name);
+        return ids == null ? -1 : ids[0];
+    }
+
+    /**
+     * Gets every type with the given name.
+     * @param name - the internal name of the type
+     * @return the ids of the types, in ascending order
+     */
+    int[] getTypes(String name) {
+        int[] ids = nameIds.get(name);
+        return ids == null ? NO_TYPES : ids;
+    }
+
+    /**
+     * Gets the types with the given simple name, in any package. The simple name of an inner class is the part of
+     * its name following the last '$', less the digits the compiler prefixes to local classes, as returned by
+     * {@link Class#getSimpleName()}; anonymous classes have no simple name.
+     * @param simpleName - the simple name of the type
+     * @return the ids of the types, in ascending order
+     */
+    int[] getSimpleNamed(String simpleName) {
+        int[] ids = simpleNameIds.get(simpleName);
+        return ids == null ? NO_TYPES : ids;
+    }
+
+    /**
+     * Gets the types within a package.
+     * @param packageName - the internal name of the package, or an empty string for the default package
+     * @param subpackages - whether to include types in subpackages
+     * @return the ids of the types, in order of their names
+     */
+    int[] getPackage(String packageName, boolean subpackages) {
+        String prefix = packageName.isEmpty() || packageName.endsWith("/") ? packageName : packageName + "/";
+        int start = lowerBound(prefix);
+        int end = start;
+        while(end < sortedNames.length && sortedNames[end].startsWith(prefix)) end++;
+        if(subpackages) return Arrays.copyOfRange(sortedIds, start, end);
+
+        int[] ids = new int[end - start];
+        int count = 0;
+        for(int position = start; position < end; position++) {
+            if(sortedNames[position].indexOf('/', prefix.length()) < 0) ids[count++] = sortedIds[position];
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = sortedNames.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(sortedNames[mid].compareTo(key) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, ElementIndex.IdList> lists) {
+        Map<String, int[]> arrays = new HashMap<>(lists.size() * 2);
+        for(Map.Entry<String, ElementIndex.IdList> entry : lists.entrySet()) {
+            arrays.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return arrays;
+    }
+
+    private static String getSimpleName(String name) {
+        int start = Math.max(name.lastIndexOf('/'), name.lastIndexOf('$')) + 1;
+        if(start > 0 && name.charAt(start - 1) == '$') {
+            while(start < name.length() - 1 && Character.isDigit(name.charAt(start))) start++;
+        }
+        return name.substring(start);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Member storage for scans using {@link au.aklein.metajava.StorageMode#OFF_HEAP}.
+ *
+ * Methods and fields are stored as fixed size records in direct {@link java.nio.ByteBuffer ByteBuffers}, outside of
+ * the Java heap. Names and descriptors are stored once each, as UTF-8 in a string table which is also held in a direct
+ * buffer, and records refer to them by offset. Annotation lists, which are few once shared, stay on the heap in a table
+ * referred to by id. Member elements and their names are decoded from the buffers each time a member is read.
+ *
+ * A method record holds the offsets of its name, descriptor and generic signature, the ids of its annotation and
+ * parameter annotation lists, and its access flags. A field record holds the offsets of its name and generic
+ * signature, the id of its annotation list and its access flags.
+ */
+final class OffHeapStore extends MemberStore {
+    private static final int METHOD_RECORD = 24;
+    private static final int FIELD_RECORD = 16;
+    private static final int NO_STRING = -1;
+
+    private Map<String, Integer> stringOffsets;
+
+    private ByteBuffer strings;
+    private ByteBuffer methods;
+    private ByteBuffer fields;
+
+    private OffHeapStore() {
+        this.stringOffsets = new HashMap<>();
+        this.strings = allocate(4096);
+        this.methods = allocate(64 * METHOD_RECORD);
+        this.fields = allocate(64 * FIELD_RECORD);
+    }
+
+    /**
+     * Create an empty store for a single scan.
+     * @return a new OffHeapStore
+     */
+    static OffHeapStore newOffHeapStore() {
+        return new OffHeapStore();
+    }
+
+    @Override
+    List<MethodElement> addMethods(List<MethodElement.MethodElementBuilder> builders, ClassElement declaringClass) {
+        if(builders.isEmpty()) return Collections.emptyList();
+        int start = methods.position() / METHOD_RECORD;
+        methods = ensureCapacity(methods, builders.size() * METHOD_RECORD);
+        for(MethodElement.MethodElementBuilder builder : builders) {
+            methods.putInt(addString(builder.getName()));
+            methods.putInt(addString(builder.getSignature()));
+            methods.putInt(addString(builder.getGenericSignature()));
+            methods.putInt(addAnnotations(builder.getAnnotations()));
+            methods.putInt(addParameterAnnotations(builder.getParameterAnnotations()));
+            methods.putShort(builder.getAccessFlags());
+            methods.putShort((short) 0);
+        }
+        return new MethodList(start, builders.size(), declaringClass);
+    }
+
+    @Override
+    List<FieldElement> addFields(List<FieldElement.FieldElementBuilder> builders, ClassElement declaringClass) {
+        if(builders.isEmpty()) return Collections.emptyList();
+        int start = fields.position() / FIELD_RECORD;
+        fields = ensureCapacity(fields, builders.size() * FIELD_RECORD);
+        for(FieldElement.FieldElementBuilder builder : builders) {
+            fields.putInt(addString(builder.getName()));
+            fields.putInt(addString(builder.getGenericSignature()));
+            fields.putInt(addAnnotations(builder.getAnnotations()));
+            fields.putShort(builder.getAccessFlags());
+            fields.putShort((short) 0);
+        }
+        return new FieldList(start, builders.size(), declaringClass);
+    }
+
+    /**
+     * Releases the tables used while adding members and copies each buffer into one holding only its contents.
+     */
+    @Override
+    void trim() {
+        super.trim();
+        stringOffsets = null;
+        strings = copy(strings, strings.position());
+        methods = copy(methods, methods.position());
+        fields = copy(fields, fields.position());
+    }
+
+    private int addString(String value) {
+        if(value == null) return NO_STRING;
+        Integer offset = stringOffsets.get(value);
+        if(offset == null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            strings = ensureCapacity(strings, 4 + bytes.length);
+            offset = strings.position();
+            strings.putInt(bytes.length);
+            strings.put(bytes);
+            stringOffsets.put(value, offset);
+        }
+        return offset;
+    }
+
+    private String readString(int offset) {
+        if(offset == NO_STRING) return null;
+        byte[] bytes = new byte[strings.getInt(offset)];
+        //The shared buffer's position must not move, as other threads may be reading it
+        ByteBuffer view = strings.duplicate();
+        view.position(offset + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int required) {
+        if(buffer.remaining() >= required) return buffer;
+        long capacity = Math.max((long) buffer.position() + required, 2L * buffer.capacity());
+        return copy(buffer, (int) Math.min(capacity, Integer.MAX_VALUE));
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer, int capacity) {
+        ByteBuffer copied = allocate(capacity);
+        buffer.flip();
+        copied.put(buffer);
+        return copied;
+    }
+
+    /**
+     * The methods of one class, decoded from the store as they are read.
+     */
+    private final class MethodList extends AbstractList<MethodElement> implements RandomAccess {
+        private final int start;
+        private final int size;
+        private final ClassElement declaringClass;
+
+        private MethodList(int start, int size, ClassElement declaringClass) {
+            this.start = start;
+            this.size = size;
+            this.declaringClass = declaringClass;
+        }
+
+        @Override
+        public MethodElement get(int index) {
+            if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+            int record = (start + index) * METHOD_RECORD;
+            return new MethodElement(readString(methods.getInt(record)), readString(methods.getInt(record + 4)),
+                                     readString(methods.getInt(record + 8)), methods.getShort(record + 20),
+                                     getAnnotations(methods.getInt(record + 12)),
+                                     getParameterAnnotations(methods.getInt(record + 16)), declaringClass);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The fields of one class, decoded from the store as they are read.
+     */
+    private final class FieldList extends AbstractList<FieldElement> implements RandomAccess {
+        private final int start;
+        private final int size;
+        private final ClassElement declaringClass;
+
+        private FieldList(int start, int size, ClassElement declaringClass) {
+            this.start = start;
+            this.size = size;
+            this.declaringClass = declaringClass;
+        }
+
+        @Override
+        public FieldElement get(int index) {
+            if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+            int record = (start + index) * FIELD_RECORD;
+            return new FieldElement(readString(fields.getInt(record)), readString(fields.getInt(record + 4)),
+                                    fields.getShort(record + 12), getAnnotations(fields.getInt(record + 8)),
+                                    declaringClass);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -16,7 +16,7 @@
 
 package au.aklein.metajava;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -29,14 +29,29 @@ public final class ParameterElement implements Element {
     private final int dimensions;
     private List<AnnotationElement> parameterAnnotations;
     private final MethodElement declaringMethod;
+    private final int position;
+    private final int hash;
 
     public ParameterElement(String paramType, int dim, List<AnnotationElement> parameterAnnotations,
                             MethodElement declaringMethod) {
+        this(paramType, dim, parameterAnnotations, declaringMethod, -1);
+    }
+
+    /**
+     * @param position - the index of the parameter within its method's descriptor, or -1 if unknown
+     */
+    ParameterElement(String paramType, int dim, List<AnnotationElement> parameterAnnotations,
+                     MethodElement declaringMethod, int position) {
         this.paramType = paramType;
         this.isArray = dim > 0;
         this.dimensions = dim;
         this.parameterAnnotations = parameterAnnotations;
         this.declaringMethod = declaringMethod;
+        this.position = position;
+
+        int typeHash = ElementHash.combine(paramType.hashCode(), dim);
+        int methodHash = declaringMethod == null ? 0 : declaringMethod.hashCode();
+        this.hash = ElementHash.mix(ElementHash.combine(ElementHash.combine(typeHash, position), methodHash));
     }
 
     /**
@@ -79,6 +94,36 @@ public final class ParameterElement implements Element {
     }
 
 
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Parameters are equal when they have the same type and position and are declared by equal methods.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if(other == this) return true;
+        if(!(other instanceof ParameterElement)) return false;
+        ParameterElement parameter = (ParameterElement) other;
+        return hash == parameter.hash && position == parameter.position && dimensions == parameter.dimensions &&
+               paramType.equals(parameter.paramType) && (declaringMethod == null ? parameter.declaringMethod == null
+                                                            : declaringMethod.equals(parameter.declaringMethod));
+    }
+
+    /**
+     * Determines whether a parameter is found by this parameter when searching, comparing the position and declaring
+     * method only if this parameter has them.
+     * @param parameter - the parameter being searched
+     * @return true if the parameter matches
+     */
+    boolean matches(ParameterElement parameter) {
+        if(declaringMethod != null) return equals(parameter);
+        return dimensions == parameter.dimensions && paramType.equals(parameter.paramType) &&
+               (position < 0 || position == parameter.position);
+    }
+
     @Override
     public boolean has(Element element) {
         switch (element.type()) {
@@ -101,12 +146,26 @@ public final class ParameterElement implements Element {
     @SuppressWarnings("unchecked")
     public <T extends Element> List<T> getAssociated(ElementType returnType) {
         switch (returnType) {
-            case METHOD: return new ArrayList<T>(){{ add((T) declaringMethod);}};
-            case TYPE: return new ArrayList<T>(){{ add((T) declaringMethod.getDeclaringClass()); }};
-            default:
-                final List<T> elements = new ArrayList<>();
-                elements.add((T) this);
-                return elements;
+            case METHOD: return Collections.singletonList((T) declaringMethod);
+            case TYPE: return Collections.singletonList((T) declaringMethod.getDeclaringClass());
+            case ANNOTATION: return (List<T>) parameterAnnotations;
+            default: return Collections.singletonList((T) this);
+        }
+    }
+
+    @Override
+    public boolean forEachAssociated(ElementType returnType, ElementVisitor visitor) {
+        switch (returnType) {
+            case METHOD: return declaringMethod == null || visitor.visit(declaringMethod);
+            case TYPE:
+                return declaringMethod == null || declaringMethod.getDeclaringClass() == null
+                        || visitor.visit(declaringMethod.getDeclaringClass());
+            case ANNOTATION:
+                for(int i=0; i < parameterAnnotations.size(); i++) {
+                    if(!visitor.visit(parameterAnnotations.get(i))) return false;
+                }
+                return true;
+            default: return visitor.visit(this);
         }
     }
 
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the classes and method handles resolved from scanned elements, so that bridging from the element model to
+ * reflection costs a few map lookups once a class or method has been resolved.
+ *
+ * Classes are cached per {@link java.lang.ClassLoader}, in a map whose keys are weak and whose values refer to
+ * classes only weakly, so a cached class never keeps its loader reachable and loaders can still be unloaded. Method
+ * handles are attached to their declaring class through a {@link java.lang.ClassValue}, and are released along with
+ * the class. Failed resolutions are not cached.
+ */
+final class ReflectionCache {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Map<ClassLoader, Map<String, WeakReference<Class<?>>>> CLASSES = new WeakHashMap<>();
+    private static final ClassValue<Map<String, Map<String, MethodHandle>>> METHOD_HANDLES =
+            new ClassValue<Map<String, Map<String, MethodHandle>>>() {
+                @Override
+                protected Map<String, Map<String, MethodHandle>> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private ReflectionCache() {
+    }
+
+    /**
+     * Loads a class through a class loader, or returns the class it loaded before.
+     * @param classLoader - the class loader to load the class with
+     * @param className - the binary name of the class, delimited by periods
+     * @return the loaded class
+     * @throws ClassNotFoundException if the class loader cannot find the class
+     */
+    static Class<?> loadClass(ClassLoader classLoader, String className) throws ClassNotFoundException {
+        Map<String, WeakReference<Class<?>>> classes;
+        synchronized (CLASSES) {
+            classes = CLASSES.get(classLoader);
+            if(classes == null) {
+                classes = new ConcurrentHashMap<>();
+                CLASSES.put(classLoader, classes);
+            }
+        }
+
+        WeakReference<Class<?>> cached = classes.get(className);
+        Class<?> type = cached == null ? null : cached.get();
+        if(type == null) {
+            type = classLoader.loadClass(className);
+            classes.put(className, new WeakReference<Class<?>>(type));
+        }
+        return type;
+    }
+
+    /**
+     * Finds a method handle for a method of a class, or returns the handle found before. Parameter and return types
+     * are resolved by the class loader of the declaring class, as the JVM resolves them when linking the method.
+     * @param declaringType - the class declaring the method
+     * @param name - the name of the method
+     * @param descriptor - the method descriptor
+     * @param isStatic - whether the method is static
+     * @return the method handle
+     * @throws NoSuchMethodException if the class does not declare or inherit the method
+     * @throws IllegalAccessException if the method is not accessible
+     */
+    static MethodHandle findMethod(Class<?> declaringType, String name, String descriptor, boolean isStatic)
+            throws NoSuchMethodException, IllegalAccessException {
+        Map<String, Map<String, MethodHandle>> methods = METHOD_HANDLES.get(declaringType);
+        Map<String, MethodHandle> overloads = methods.get(name);
+        if(overloads == null) {
+            overloads = new ConcurrentHashMap<>();
+            Map<String, MethodHandle> existing = methods.putIfAbsent(name, overloads);
+            if(existing != null) overloads = existing;
+        }
+
+        MethodHandle handle = overloads.get(descriptor);
+        if(handle == null) {
+            MethodType type = MethodType.fromMethodDescriptorString(descriptor, declaringType.getClassLoader());
+            handle = isStatic ? LOOKUP.findStatic(declaringType, name, type)
+                              : LOOKUP.findVirtual(declaringType, name, type);
+            overloads.put(descriptor, handle);
+        }
+        return handle;
+    }
+}
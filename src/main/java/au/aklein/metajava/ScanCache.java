@@ -0,0 +1,253 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import au.aklein.metajava.exception.ClassFileException;
+import au.aklein.metajava.exception.ClassPathException;
+import au.aklein.metajava.internal.PathProvider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * A bounded, thread-safe cache of parsed class path roots which may be shared between
+ * {@link au.aklein.metajava.MetaJava} instances.
+ *
+ * Each root (directory or JAR file) is parsed in full the first time it is scanned, and later scans of the same root
+ * filter the cached classes in memory instead of reading from disk. Roots are keyed by their canonical path and a
+ * fingerprint of their size and modification time, so a root which changes on disk is parsed again. Concurrent scans
+ * of the same root wait for a single parse. When the total number of cached classes exceeds the configured maximum,
+ * the least recently used roots are evicted.
+ *
+ * @see au.aklein.metajava.MetaJava#scanClassPath(String, boolean, ScanCache)
+ */
+public final class ScanCache {
+    private static final int DEFAULT_MAXIMUM_CLASSES = 100000;
+    private static final ScanCache SHARED_CACHE = new ScanCache(DEFAULT_MAXIMUM_CLASSES);
+
+    private final int maximumClasses;
+    private final LinkedHashMap<Path, CacheEntry> entries;
+    private int cachedClasses;
+    private long hitCount;
+    private long missCount;
+
+    private ScanCache(int maximumClasses) {
+        this.maximumClasses = maximumClasses;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Create a new cache holding at most the given number of classes.
+     * @param maximumClasses - the maximum number of classes to hold before evicting roots
+     * @return a new ScanCache instance
+     */
+    public static ScanCache newScanCache(int maximumClasses) {
+        return new ScanCache(maximumClasses);
+    }
+
+    /**
+     * Returns a cache shared across the application, holding up to 100,000 classes.
+     * @return the shared ScanCache instance
+     */
+    public static ScanCache sharedCache() {
+        return SHARED_CACHE;
+    }
+
+    /**
+     * Gets the number of class path roots currently cached.
+     * @return The number of roots.
+     */
+    public synchronized int getRootCount() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of classes currently cached, across all roots.
+     * @return The number of classes.
+     */
+    public synchronized int getClassCount() {
+        return cachedClasses;
+    }
+
+    /**
+     * Gets the number of root lookups which were answered from the cache.
+     * @return The number of cache hits.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of root lookups which required the root to be parsed.
+     * @return The number of cache misses.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Removes every root from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        cachedClasses = 0;
+    }
+
+    CachedRoot getRoot(Path root, Function<Path, CachedRoot> parser) {
+        Path key = canonicalPath(root);
+        String fingerprint = fingerprint(root);
+        CacheEntry entry;
+        boolean parse = false;
+
+        synchronized (this) {
+            entry = entries.get(key);
+            if(entry != null && entry.fingerprint.equals(fingerprint)) {
+                hitCount++;
+            } else {
+                if(entry != null) remove(key);
+                entry = new CacheEntry(fingerprint);
+                entries.put(key, entry);
+                missCount++;
+                parse = true;
+            }
+        }
+
+        if(parse) {
+            try {
+                CachedRoot cachedRoot = parser.apply(root);
+                synchronized (this) {
+                    if(entries.get(key) == entry) {
+                        entry.weight = cachedRoot.size();
+                        cachedClasses += entry.weight;
+                        evict(entry);
+                    }
+                }
+                entry.result.complete(cachedRoot);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    if(entries.get(key) == entry) remove(key);
+                }
+                entry.result.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return entry.result.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private void remove(Path key) {
+        CacheEntry removed = entries.remove(key);
+        if(removed != null) cachedClasses -= removed.weight;
+    }
+
+    private void evict(CacheEntry keep) {
+        Iterator<Map.Entry<Path, CacheEntry>> iterator = entries.entrySet().iterator();
+        while(cachedClasses > maximumClasses && iterator.hasNext()) {
+            CacheEntry eldest = iterator.next().getValue();
+            if(eldest == keep || !eldest.result.isDone()) continue;
+            cachedClasses -= eldest.weight;
+            iterator.remove();
+        }
+    }
+
+    private static Path canonicalPath(Path root) {
+        try {
+            return root.toRealPath();
+        } catch (IOException e) {
+            return root.toAbsolutePath().normalize();
+        }
+    }
+
+    private static String fingerprint(Path root) {
+        if(!Files.exists(root)) return "missing";
+        try {
+            if(PathProvider.isArchive(root) || !Files.isDirectory(root)) {
+                BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class);
+                return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+            }
+            long count = 0;
+            long size = 0;
+            long lastModified = 0;
+            try(Stream<Path> files = Files.walk(root)) {
+                for(Iterator<Path> iterator = files.iterator(); iterator.hasNext(); ) {
+                    BasicFileAttributes attributes = Files.readAttributes(iterator.next(), BasicFileAttributes.class);
+                    count++;
+                    size += attributes.size();
+                    lastModified = Math.max(lastModified, attributes.lastModifiedTime().toMillis());
+                }
+            }
+            return count + ":" + size + ":" + lastModified;
+        } catch (IOException e) {
+            throw new ClassPathException("Unable to read class path root: "+root);
+        }
+    }
+
+    /**
+     * The classes parsed from a single class path root, along with any errors encountered while parsing it.
+     */
+    static final class CachedRoot {
+        private final List<ClassElement> classes;
+        private final Map<Path, ClassFileException> errors;
+
+        CachedRoot(List<ClassElement> classes, Map<Path, ClassFileException> errors) {
+            this.classes = classes;
+            this.errors = errors;
+        }
+
+        List<ClassElement> getClasses() {
+            return classes;
+        }
+
+        Map<Path, ClassFileException> getErrors() {
+            return errors;
+        }
+
+        int size() {
+            int size = 0;
+            for(ClassElement classElement : classes) {
+                size += 1 + classElement.getInnerClasses().size();
+            }
+            return size;
+        }
+    }
+
+    private static final class CacheEntry {
+        private final String fingerprint;
+        private final CompletableFuture<CachedRoot> result;
+        private int weight;
+
+        private CacheEntry(String fingerprint) {
+            this.fingerprint = fingerprint;
+            this.result = new CompletableFuture<>();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports the progress of a class path scan. The counters may be read from any thread while the scan is running.
+ *
+ * @see au.aklein.metajava.MetaJava#scanClassPathAsync(String, boolean, java.util.concurrent.Executor, ScanProgress)
+ */
+public final class ScanProgress {
+    private final AtomicInteger rootsTotal;
+    private final AtomicInteger rootsDone;
+    private final AtomicInteger classesParsed;
+    private final AtomicLong bytesRead;
+    private volatile boolean done;
+
+    public ScanProgress() {
+        this.rootsTotal = new AtomicInteger();
+        this.rootsDone = new AtomicInteger();
+        this.classesParsed = new AtomicInteger();
+        this.bytesRead = new AtomicLong();
+    }
+
+    /**
+     * Gets the number of class path roots (directories and JAR files) which will be scanned.
+     * @return The number of roots, or 0 if the scan has not yet started.
+     */
+    public int getRootsTotal() {
+        return rootsTotal.get();
+    }
+
+    /**
+     * Gets the number of class path roots which have been completely scanned.
+     * @return The number of roots scanned.
+     */
+    public int getRootsDone() {
+        return rootsDone.get();
+    }
+
+    /**
+     * Gets the number of class files which have been parsed.
+     * @return The number of classes parsed.
+     */
+    public int getClassesParsed() {
+        return classesParsed.get();
+    }
+
+    /**
+     * Gets the number of bytes of class file data which have been read.
+     * @return The number of bytes read.
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * Determines if the scan has completed, either successfully or with an error.
+     * @return True if the scan is complete, otherwise false.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    void begin(int roots) {
+        rootsTotal.set(roots);
+    }
+
+    void classParsed(long bytes) {
+        classesParsed.incrementAndGet();
+        bytesRead.addAndGet(bytes);
+    }
+
+    void rootDone() {
+        rootsDone.incrementAndGet();
+    }
+
+    void finish() {
+        done = true;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanProgress{roots=" + getRootsDone() + "/" + getRootsTotal() +
+                ", classes=" + getClassesParsed() + ", bytes=" + getBytesRead() + "}";
+    }
+}
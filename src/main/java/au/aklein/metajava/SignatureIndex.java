@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inverted indexes from parameter type, return type and parameter count to the methods of an
+ * {@link au.aklein.metajava.ElementIndex}, built from the shared {@link au.aklein.metajava.MethodDescriptor} of each
+ * method so that no parameter elements are created.
+ *
+ * Type names are in the format of {@link java.lang.Class#getName()}. Constructors are included, under their method
+ * ids.
+ */
+final class SignatureIndex {
+    private static final int[] NO_METHODS = new int[0];
+
+    private final Map<String, int[]> parameterTypes;
+    private final Map<String, int[]> returnTypes;
+    private final int[][] arities;
+
+    private SignatureIndex(ElementIndex index) {
+        Map<String, ElementIndex.IdList> parameters = new HashMap<>();
+        Map<String, ElementIndex.IdList> returns = new HashMap<>();
+        Map<Integer, ElementIndex.IdList> counts = new HashMap<>();
+        int maximumArity = -1;
+
+        for(int id=0; id < index.size(ElementType.METHOD); id++) {
+            MethodDescriptor descriptor = ((MethodElement) index.get(ElementType.METHOD, id)).getDescriptor();
+            for(int parameter=0; parameter < descriptor.getParameterCount(); parameter++) {
+                ElementIndex.IdList ids = parameters.computeIfAbsent(descriptor.getTypeName(parameter),
+                                                                     type -> new ElementIndex.IdList());
+                //Methods taking several parameters of the same type are only indexed once
+                if(ids.size() == 0 || ids.last() != id) ids.add(id);
+            }
+            returns.computeIfAbsent(descriptor.getReturnTypeName(), type -> new ElementIndex.IdList()).add(id);
+            counts.computeIfAbsent(descriptor.getParameterCount(), count -> new ElementIndex.IdList()).add(id);
+            maximumArity = Math.max(maximumArity, descriptor.getParameterCount());
+        }
+
+        this.parameterTypes = toArrays(parameters);
+        this.returnTypes = toArrays(returns);
+        this.arities = new int[maximumArity + 1][];
+        for(int arity=0; arity < arities.length; arity++) {
+            ElementIndex.IdList ids = counts.get(arity);
+            arities[arity] = ids == null ? NO_METHODS : ids.toArray();
+        }
+    }
+
+    /**
+     * Build the signature index for the methods held by an element index.
+     * @param index - the element index
+     * @return a new SignatureIndex
+     */
+    static SignatureIndex newSignatureIndex(ElementIndex index) {
+        return new SignatureIndex(index);
+    }
+
+    /**
+     * Gets the methods with at least one parameter of the given type.
+     * @param typeName - the parameter type name
+     * @return the ids of the methods, in ascending order
+     */
+    int[] getParameterType(String typeName) {
+        int[] ids = parameterTypes.get(typeName);
+        return ids == null ? NO_METHODS : ids;
+    }
+
+    /**
+     * Gets the methods with the given return type.
+     * @param typeName - the return type name, or "void"
+     * @return the ids of the methods, in ascending order
+     */
+    int[] getReturnType(String typeName) {
+        int[] ids = returnTypes.get(typeName);
+        return ids == null ? NO_METHODS : ids;
+    }
+
+    /**
+     * Gets the methods with the given number of parameters.
+     * @param parameterCount - the number of parameters
+     * @return the ids of the methods, in ascending order
+     */
+    int[] getArity(int parameterCount) {
+        if(parameterCount < 0 || parameterCount >= arities.length) return NO_METHODS;
+        return arities[parameterCount];
+    }
+
+    private static <K> Map<K, int[]> toArrays(Map<K, ElementIndex.IdList> lists) {
+        Map<K, int[]> arrays = new HashMap<>(lists.size() * 2);
+        for(Map.Entry<K, ElementIndex.IdList> entry : lists.entrySet()) {
+            arrays.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return arrays;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+/**
+ * How the element model produced by a scan is held in memory.
+ */
+public enum StorageMode {
+    /**
+     * Each method and field is held as its own {@link au.aklein.metajava.MethodElement} or
+     * {@link au.aklein.metajava.FieldElement} object.
+     */
+    STANDARD,
+
+    /**
+     * Methods and fields are held in primitive arrays for the whole scan, with their names and descriptors stored once
+     * each as UTF-8 in a shared table, and their element objects are decoded each time they are read. The members of a
+     * large library take a third or less of the heap they take with {@link #STANDARD}; the classes themselves are held
+     * as in every other mode, so a whole scan retains around half the heap of {@link #STANDARD}. In exchange, every
+     * member access decodes the member's names and allocates its element. Member elements should be compared with
+     * equals() rather than by identity.
+     */
+    COMPACT,
+
+    /**
+     * Methods and fields are not read during the scan. The members of a class are read from its class file the first
+     * time they are accessed, and then held as in {@link #STANDARD}, so only the classes a caller or query looks into
+     * pay for their members. Queries on types alone do not read any members. Reading members may throw a
+     * {@link au.aklein.metajava.exception.ClassFileException} if the class file has changed or been removed since
+     * the scan.
+     */
+    LAZY,
+
+    /**
+     * As in {@link #COMPACT}, member elements are created each time they are read, but the names, descriptors and
+     * access flags of methods and fields are held in direct {@link java.nio.ByteBuffer ByteBuffers} outside of the
+     * Java heap. Member names are decoded from the buffers on every access, as they are from the table of
+     * {@link #COMPACT}, and the heap holds little more than the classes themselves. The buffers count towards the
+     * direct memory limit of the JVM, <code>-XX:MaxDirectMemorySize</code>, and are released when the scan is no
+     * longer reachable.
+     */
+    OFF_HEAP
+}
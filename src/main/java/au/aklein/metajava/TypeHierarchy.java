@@ -0,0 +1,296 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Supertype and subtype relationships between the types of a {@link au.aklein.metajava.ElementIndex}.
+ *
+ * Every scanned type is a node with the same id it has in the index. Supertypes which were not scanned, such as
+ * <code>java/lang/Object</code>, are given ids after the scanned types; they have no supertypes of their own. Direct
+ * relationships are held as adjacency arrays, and transitive closures are computed on first use and cached.
+ */
+final class TypeHierarchy {
+    private static final int[] NO_NODES = new int[0];
+
+    private final ElementIndex index;
+    private final int typeCount;
+    private final Map<String, Integer> nodeIds;
+    private final String[] names;
+    private final int[][] supertypes;
+    private final int[][] subtypes;
+
+    private final Map<Integer, int[]> supertypeClosures;
+    private final Map<Integer, int[]> subtypeClosures;
+
+    private TypeHierarchy(ElementIndex index) {
+        this.index = index;
+        this.typeCount = index.size(ElementType.TYPE);
+        this.nodeIds = new HashMap<>();
+        this.supertypeClosures = new ConcurrentHashMap<>();
+        this.subtypeClosures = new ConcurrentHashMap<>();
+
+        List<String> nodeNames = new ArrayList<>();
+        for(int id=0; id < typeCount; id++) {
+            String name = index.getType(id).getName();
+            nodeNames.add(name);
+            if(!nodeIds.containsKey(name)) nodeIds.put(name, id);
+        }
+
+        int[][] directSupertypes = new int[typeCount][];
+        int[] subtypeCounts = new int[typeCount];
+        for(int id=0; id < typeCount; id++) {
+            ClassElement classElement = index.getType(id);
+            List<String> interfaces = classElement.getInterfaceNames();
+            String superClass = classElement.getSuperClassName();
+
+            int[] direct = new int[interfaces.size() + (superClass == null ? 0 : 1)];
+            int position = 0;
+            if(superClass != null) direct[position++] = nodeId(superClass, nodeNames);
+            for(String interfaceName : interfaces) {
+                direct[position++] = nodeId(interfaceName, nodeNames);
+            }
+            directSupertypes[id] = direct;
+            for(int supertype : direct) {
+                if(supertype >= subtypeCounts.length) subtypeCounts = Arrays.copyOf(subtypeCounts, nodeNames.size());
+                subtypeCounts[supertype]++;
+            }
+        }
+
+        int nodeCount = nodeNames.size();
+        subtypeCounts = Arrays.copyOf(subtypeCounts, nodeCount);
+        this.names = nodeNames.toArray(new String[nodeCount]);
+        this.supertypes = Arrays.copyOf(directSupertypes, nodeCount);
+        this.subtypes = new int[nodeCount][];
+        for(int node=0; node < nodeCount; node++) {
+            if(node >= typeCount) supertypes[node] = NO_NODES;
+            subtypes[node] = subtypeCounts[node] == 0 ? NO_NODES : new int[subtypeCounts[node]];
+        }
+
+        int[] filled = new int[nodeCount];
+        for(int id=0; id < typeCount; id++) {
+            for(int supertype : supertypes[id]) {
+                subtypes[supertype][filled[supertype]++] = id;
+            }
+        }
+    }
+
+    /**
+     * Build the hierarchy of the types held by an index.
+     * @param index - the element index
+     * @return a new TypeHierarchy
+     */
+    static TypeHierarchy newTypeHierarchy(ElementIndex index) {
+        return new TypeHierarchy(index);
+    }
+
+    /**
+     * Gets the scanned types which extend or implement the given type.
+     * @param name - the internal name of the type
+     * @param transitive - whether to include indirect subtypes
+     * @return the ids of the subtypes, in ascending order
+     */
+    int[] getSubtypes(String name, boolean transitive) {
+        Integer node = nodeIds.get(name);
+        if(node == null) return NO_NODES;
+        if(!transitive) return subtypes[node];
+        return subtypeClosures.computeIfAbsent(node, start -> closure(start, subtypes));
+    }
+
+    /**
+     * Gets the scanned classes, excluding interfaces, which implement the given interface.
+     * @param name - the internal name of the interface
+     * @param transitive - whether to include classes which implement the interface through a superclass or
+     *                   a subinterface
+     * @return the ids of the implementing classes, in ascending order
+     */
+    int[] getImplementors(String name, boolean transitive) {
+        Integer node = nodeIds.get(name);
+        if(node == null) return NO_NODES;
+
+        int[] candidates;
+        if(transitive) {
+            candidates = getSubtypes(name, true);
+        } else {
+            List<Integer> direct = new ArrayList<>();
+            for(int subtype : subtypes[node]) {
+                if(index.getType(subtype).getInterfaceNames().contains(name)) direct.add(subtype);
+            }
+            candidates = toArray(direct);
+        }
+
+        int[] implementors = new int[candidates.length];
+        int count = 0;
+        for(int candidate : candidates) {
+            if(!index.getType(candidate).isInterface()) implementors[count++] = candidate;
+        }
+        return Arrays.copyOf(implementors, count);
+    }
+
+    /**
+     * Gets the scanned classes, excluding interfaces, which implement a parameterization of the given interface,
+     * directly or through their supertypes. Type variables are resolved through the generic signatures of the
+     * scanned supertypes, so a class extending <code>AbstractHandler&lt;OrderEvent&gt;</code>, where
+     * <code>AbstractHandler&lt;T&gt;</code> implements <code>Handler&lt;T&gt;</code>, implements
+     * <code>Handler&lt;OrderEvent&gt;</code>.
+     * @param name - the internal name of the interface
+     * @param typeArguments - the internal names of the type arguments, each matched against the erasure of the
+     *                      resolved argument
+     * @return the ids of the implementing classes, in ascending order
+     */
+    int[] getImplementors(String name, List<String> typeArguments) {
+        int[] candidates = getImplementors(name, true);
+        int[] implementors = new int[candidates.length];
+        int count = 0;
+        for(int candidate : candidates) {
+            List<GenericType> arguments = resolveTypeArguments(names[candidate], name,
+                                                               Collections.<String, GenericType>emptyMap(),
+                                                               new HashSet<String>());
+            if(arguments != null && matches(arguments, typeArguments)) implementors[count++] = candidate;
+        }
+        return Arrays.copyOf(implementors, count);
+    }
+
+    /**
+     * Finds the type arguments with which a type extends or implements a supertype, binding the type variables of
+     * each supertype to the arguments given to it on the way.
+     * @return the resolved type arguments, empty if the supertype is used raw, or null if it is not reached
+     */
+    private List<GenericType> resolveTypeArguments(String typeName, String supertypeName,
+                                                   Map<String, GenericType> bindings, Set<String> visited) {
+        Integer node = nodeIds.get(typeName);
+        if(node == null || node >= typeCount || !visited.add(typeName)) return null;
+
+        ClassElement type = index.getType(node);
+        List<GenericType> direct = new ArrayList<>(type.getGenericInterfaces());
+        GenericType superclass = type.getGenericSuperclass();
+        if(superclass != null) direct.add(superclass);
+
+        for(GenericType supertype : direct) {
+            GenericType bound = supertype.substitute(bindings);
+            if(bound.getName().equals(supertypeName)) return bound.getTypeArguments();
+            List<GenericType> arguments = resolveTypeArguments(bound.getName(), supertypeName, bindingsOf(bound),
+                                                               visited);
+            if(arguments != null) return arguments;
+        }
+        return null;
+    }
+
+    /**
+     * Binds the type parameters of a scanned type to the type arguments of a parameterization of it.
+     */
+    private Map<String, GenericType> bindingsOf(GenericType type) {
+        if(type.getTypeArguments().isEmpty()) return Collections.emptyMap();
+        Integer node = nodeIds.get(type.getName());
+        if(node == null || node >= typeCount) return Collections.emptyMap();
+        GenericSignature signature = index.getType(node).getGenericSignature();
+        if(signature == null) return Collections.emptyMap();
+
+        List<TypeParameter> parameters = signature.getTypeParameters();
+        List<GenericType> arguments = type.getTypeArguments();
+        if(parameters.size() != arguments.size()) return Collections.emptyMap();
+        Map<String, GenericType> bindings = new HashMap<>();
+        for(int i=0; i < parameters.size(); i++) {
+            bindings.put(parameters.get(i).getName(), arguments.get(i));
+        }
+        return bindings;
+    }
+
+    private static boolean matches(List<GenericType> arguments, List<String> typeArguments) {
+        if(arguments.size() != typeArguments.size()) return false;
+        for(int i=0; i < arguments.size(); i++) {
+            GenericType argument = arguments.get(i);
+            if(argument.getKind() != GenericType.Kind.CLASS || !argument.getName().equals(typeArguments.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the names of the supertypes of the given type, including supertypes which were not scanned.
+     * @param name - the internal name of the type
+     * @param transitive - whether to include indirect supertypes reachable through scanned types
+     * @return the internal names of the supertypes
+     */
+    List<String> getSupertypes(String name, boolean transitive) {
+        Integer node = nodeIds.get(name);
+        if(node == null) return new ArrayList<>();
+
+        int[] nodes = transitive ? supertypeClosures.computeIfAbsent(node, start -> closure(start, supertypes))
+                                 : supertypes[node];
+        List<String> supertypeNames = new ArrayList<>(nodes.length);
+        for(int supertype : nodes) {
+            supertypeNames.add(names[supertype]);
+        }
+        return supertypeNames;
+    }
+
+    private int nodeId(String name, List<String> nodeNames) {
+        Integer node = nodeIds.get(name);
+        if(node == null) {
+            node = nodeNames.size();
+            nodeNames.add(name);
+            nodeIds.put(name, node);
+        }
+        return node;
+    }
+
+    private int[] closure(int start, int[][] edges) {
+        boolean[] visited = new boolean[names.length];
+        int[] stack = new int[names.length];
+        int top = 0;
+        int count = 0;
+
+        visited[start] = true;
+        stack[top++] = start;
+        while(top > 0) {
+            int node = stack[--top];
+            for(int next : edges[node]) {
+                if(!visited[next]) {
+                    visited[next] = true;
+                    stack[top++] = next;
+                    count++;
+                }
+            }
+        }
+
+        int[] reachable = new int[count];
+        int position = 0;
+        for(int node=0; node < visited.length; node++) {
+            if(visited[node] && node != start) reachable[position++] = node;
+        }
+        return reachable;
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        int[] array = new int[ids.size()];
+        for(int i=0; i < array.length; i++) {
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+}
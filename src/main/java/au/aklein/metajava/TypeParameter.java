@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A type parameter declared by a generic class or method, such as <code>T extends Comparable&lt;T&gt;</code>.
+ *
+ * @see au.aklein.metajava.GenericSignature#getTypeParameters()
+ */
+public final class TypeParameter {
+    private final String name;
+    private final GenericType classBound;
+    private final List<GenericType> interfaceBounds;
+
+    TypeParameter(String name, GenericType classBound, List<GenericType> interfaceBounds) {
+        this.name = name;
+        this.classBound = classBound;
+        this.interfaceBounds = interfaceBounds.isEmpty() ? Collections.<GenericType>emptyList() : interfaceBounds;
+    }
+
+    /**
+     * Gets the name of the type parameter, as used by type variables referring to it.
+     * @return The name of the type parameter.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the bounds of the type parameter, starting with its class bound if it has one. Type parameters declared
+     * without bounds are bounded by <code>java/lang/Object</code>.
+     * @return A list of GenericTypes.
+     */
+    public List<GenericType> getBounds() {
+        if(classBound == null) return interfaceBounds;
+        List<GenericType> bounds = new ArrayList<>(interfaceBounds.size() + 1);
+        bounds.add(classBound);
+        bounds.addAll(interfaceBounds);
+        return bounds;
+    }
+
+    @Override
+    public String toString() {
+        List<GenericType> bounds = getBounds();
+        if(bounds.size() == 1 && "java/lang/Object".equals(bounds.get(0).getName())) return name;
+
+        StringBuilder parameter = new StringBuilder(name);
+        for(int i=0; i < bounds.size(); i++) {
+            parameter.append(i == 0 ? " extends " : " & ").append(bounds.get(i));
+        }
+        return parameter.toString();
+    }
+}
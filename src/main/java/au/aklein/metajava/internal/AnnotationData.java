@@ -16,6 +16,9 @@
 
 package au.aklein.metajava.internal;
 
+import au.aklein.metajava.AnnotationElement;
+
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -40,5 +43,18 @@ public final class AnnotationData {
         return elementValuePairs;
     }
 
+    /**
+     * Create an {@link au.aklein.metajava.AnnotationElement} holding the annotation's type and element values.
+     * @param names - the table sharing type names and annotations between the class files of a scan
+     * @return a new AnnotationElement
+     */
+    public AnnotationElement toElement(NameTable names) {
+        Map<String, Object> values = new HashMap<>();
+        for(Map.Entry<String, ElementValue> pair : elementValuePairs.entrySet()) {
+            values.put(pair.getKey(), pair.getValue().toValue(names));
+        }
+        return new AnnotationElement(names.intern(ElementValue.descriptorName(type)), values);
+    }
+
 
 }
@@ -19,27 +19,40 @@ package au.aklein.metajava.internal;
 import au.aklein.metajava.AnnotationElement;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Process an attribute to obtain relevant information
  */
 public abstract class AttributeVisitor {
-    private List<AnnotationElement> annotations;
+    private final NameTable names;
+    private ArrayList<AnnotationElement> annotations;
     private String signature;
 
     public AttributeVisitor() {
+        this(NameTable.newNameTable());
+    }
+
+    /**
+     * @param names - the table sharing names and annotations between the class files of a scan
+     */
+    public AttributeVisitor(NameTable names) {
+        this.names = names;
         this.annotations = new ArrayList<>();
     }
 
+    protected NameTable getNames() {
+        return names;
+    }
+
     public List<AnnotationElement> getAnnotations() {
-        return annotations;
+        return trimmed(annotations);
     }
 
     public void visitAnnotation(AnnotationAttribute annotationsAttribute) {
         for(AnnotationData annotation : annotationsAttribute.getAnnotations()) {
-            String annotationName = annotation.getType();
-            annotations.add(new AnnotationElement(annotationName.substring(1, annotationName.length()-1)));
+            annotations.add(names.toAnnotation(annotation));
         }
     }
 
@@ -47,6 +60,17 @@ public abstract class AttributeVisitor {
         //System.out.println("\t\tAttr: "+attribute.getName());
     }
 
+    /**
+     * Returns a list sized to its contents for an element to keep, sharing a single instance for empty lists.
+     * @param list - the list built while visiting attributes
+     * @return the list to retain
+     */
+    protected static <T> List<T> trimmed(ArrayList<T> list) {
+        if(list.isEmpty()) return Collections.emptyList();
+        list.trimToSize();
+        return list;
+    }
+
     public boolean hasSignature() {
         return signature != null;
     }
@@ -33,6 +33,11 @@ public final class ClassAttributeVisitor extends AttributeVisitor {
     private List<String> innerClassNames;
 
     public ClassAttributeVisitor(String thisClass) {
+        this(thisClass, NameTable.newNameTable());
+    }
+
+    public ClassAttributeVisitor(String thisClass, NameTable names) {
+        super(names);
         this.innerClassNames = new ArrayList<>();
         this.thisClass = thisClass;
         this.inner = false;
@@ -62,7 +67,7 @@ public final class ClassAttributeVisitor extends AttributeVisitor {
             if(innerClass.getInnerClassInfo().equals(thisClass)) {
                 inner = true;
                 anonymous = innerClass.isAnonymous();
-                if(innerClass.getOuterClassInfo()!=null) outerClass = innerClass.getOuterClassInfo();
+                if(innerClass.getOuterClassInfo()!=null) outerClass = getNames().intern(innerClass.getOuterClassInfo());
 
             } else {
                 innerClassNames.add(innerClass.getInnerClassInfo());
@@ -23,7 +23,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -38,6 +38,9 @@ public final class ClassFileReader implements Closeable, ClassFile {
     private ClassFileBuffer classReader;
     private Path path;
     private ClassFileException lastError;
+    private long bytesRead;
+    private final NameTable names;
+    private final boolean readMembers;
 
     private Map<Short, ConstantPoolEntry> constantPool;
     private Map<Short, Short> classes;
@@ -45,7 +48,9 @@ public final class ClassFileReader implements Closeable, ClassFile {
 
     private ClassData classFileData;
 
-    private ClassFileReader(boolean keepBuffer) {
+    private ClassFileReader(boolean keepBuffer, NameTable names, boolean readMembers) {
+        this.names = names;
+        this.readMembers = readMembers;
         this.constantPool = new HashMap<>();
         this.classes = new HashMap<>();
         this.literalConstants = new HashMap<>();
@@ -118,28 +123,72 @@ public final class ClassFileReader implements Closeable, ClassFile {
     @Override
     public boolean readClassFile(Path path, boolean preserveClassBuffer) {
         try(ClassFileBuffer classBuffer = new ClassFileBuffer(path, false)) {
-            this.classReader = classBuffer;
-            this.path = path;
-            this.scan();
+            return readClassFile(path, classBuffer);
         } catch (IOException e) {
             lastError = new ClassFileException("IOException in class file: "+path+" - "+e.getMessage());
             return false;
+        }
+    }
+
+    /**
+     * Read and parse a class file from a channel, such as an entry of an archive which is not open as a file
+     * system. The channel is closed once the class file has been read.
+     *
+     * @param path - The {@link java.nio.file.Path} the class file was scanned from, used when reporting errors
+     * @param channel - The channel to read the class file from
+     * @return true if the file is read without errors, otherwise return false.
+     */
+    public boolean readClassFile(Path path, ReadableByteChannel channel) {
+        try(ClassFileBuffer classBuffer = new ClassFileBuffer(path, channel)) {
+            return readClassFile(path, classBuffer);
+        } catch (IOException e) {
+            lastError = new ClassFileException("IOException in class file: "+path+" - "+e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean readClassFile(Path path, ClassFileBuffer classBuffer) throws IOException {
+        this.classReader = classBuffer;
+        this.path = path;
+        try {
+            this.scan();
         } catch (ClassFileException e) {
             lastError = e;
             return false;
+        } finally {
+            this.bytesRead += classBuffer.getBytesRead();
         }
         return true;
-
     }
 
     public static ClassFileReader newClassFileReader() {
-        return new ClassFileReader(false);
+        return new ClassFileReader(false, NameTable.newNameTable(), true);
+    }
+
+    /**
+     * Create a reader whose class elements share names and annotations with every other reader using the same table.
+     * @param names - the table of the current scan
+     * @return a new ClassFileReader
+     */
+    public static ClassFileReader newClassFileReader(NameTable names) {
+        return new ClassFileReader(false, names, true);
+    }
+
+    /**
+     * Create a reader which may skip over the fields and methods of the class files it reads, leaving them empty in
+     * the class data. Class level information and attributes are read as normal.
+     * @param names - the table of the current scan
+     * @param readMembers - whether to parse fields and methods
+     * @return a new ClassFileReader
+     */
+    public static ClassFileReader newClassFileReader(NameTable names, boolean readMembers) {
+        return new ClassFileReader(false, names, readMembers);
     }
 
 
     @Override
     public ClassElement.ClassElementBuilder generateClassElementBuilder() {
-        return ClassElement.ClassElementBuilder.beginNewClassElement(path, classFileData);
+        return ClassElement.ClassElementBuilder.beginNewClassElement(path, classFileData, names);
     }
 
     @Override
@@ -147,6 +196,14 @@ public final class ClassFileReader implements Closeable, ClassFile {
         return lastError;
     }
 
+    /**
+     * Returns the number of bytes read from disk by this reader.
+     * @return the number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
     private void resolveConstantPool() {
         for(Map.Entry<Short, ConstantPoolEntry> indexedEntry : constantPool.entrySet()) {
             ConstantPoolEntry entry = indexedEntry.getValue();
@@ -208,6 +265,8 @@ public final class ClassFileReader implements Closeable, ClassFile {
 
             ConstantPoolEntry entry = readConstantPoolEntry(i);
             if(entry != null) constantPool.put(i, entry);
+            //Long and double constants take up two entries in the constant pool
+            if(isWideConstant(i)) i++;
         }
         resolveConstantPool();
         classFileData.accessFlags = classReader.nextShort();
@@ -224,13 +283,15 @@ public final class ClassFileReader implements Closeable, ClassFile {
         //Scan for class fields
         short fieldsCount= classReader.nextShort();
         for(int i=0; i < fieldsCount; i++) {
-            classFileData.fields.add(readFieldMethodInfoEntry());
+            if(readMembers) classFileData.fields.add(readFieldMethodInfoEntry());
+            else skipFieldMethodInfoEntry();
         }
 
         //Scan for methods
         short methodsCount = classReader.nextShort();
         for(int i=0; i < methodsCount; i++) {
-            classFileData.methods.add(readFieldMethodInfoEntry());
+            if(readMembers) classFileData.methods.add(readFieldMethodInfoEntry());
+            else skipFieldMethodInfoEntry();
         }
 
         //Scan for class attributes
@@ -240,6 +301,11 @@ public final class ClassFileReader implements Closeable, ClassFile {
         }
     }
 
+    private boolean isWideConstant(short index) {
+        Constant<?> constant = literalConstants.get(index);
+        return constant != null && (constant.getValue() instanceof Long || constant.getValue() instanceof Double);
+    }
+
     private FieldMethodInfo readFieldMethodInfoEntry() throws IOException {
         short accessFlags = classReader.nextShort();
 
@@ -258,6 +324,16 @@ public final class ClassFileReader implements Closeable, ClassFile {
                 attributes);
     }
 
+    private void skipFieldMethodInfoEntry() throws IOException {
+        //Access flags, name and descriptor indexes
+        classReader.skipBytes(6);
+        short attrCount = classReader.nextShort();
+        for(int i=0; i < attrCount; i++) {
+            classReader.skipBytes(2);
+            classReader.skipBytes(classReader.nextInt());
+        }
+    }
+
     private AttributeInfo readAttributeInfoEntry() throws IOException {
         String attrName = resolveConstantPoolString(classReader.nextShort(), false);
 
@@ -271,9 +347,7 @@ public final class ClassFileReader implements Closeable, ClassFile {
             case "RuntimeVisibleParameterAnnotations": return readParameterAnnotationsAttribute(attrName, true);
             case "RuntimeInvisibleParameterAnnotations": return readParameterAnnotationsAttribute(attrName, false);
             default :
-                for(int i=0; i < attrLength; i++) {
-                    classReader.nextByte();
-                }
+                classReader.skipBytes(attrLength);
                 return new DefaultAttribute(attrName);
         }
     }
@@ -360,9 +434,7 @@ public final class ClassFileReader implements Closeable, ClassFile {
         short maxLocals = classReader.nextShort();
         int codeLength = classReader.nextInt();
 
-        for(int i=0; i < codeLength; i++) {
-            classReader.nextByte();
-        }
+        classReader.skipBytes(codeLength);
 
 
         short exceptionTableLength = classReader.nextShort();
@@ -488,11 +560,18 @@ public final class ClassFileReader implements Closeable, ClassFile {
             //Method type - u2 index to string representing the method descriptor
 
                 return new ConstantPoolEntry<>(tag, classReader.nextShort());
+            case 17:
+            //Dynamic constant - u2 index to bootstrap_methods array, and u2 index to name and type ref
             case 18:
             //INVOKEDYNAMIC - u2 index to bootstrap_methods array, and u2 index to name and type ref
                 short bootstrapMethodIndex = classReader.nextShort();
                 short nameTypeIndex = classReader.nextShort();
                 return new ConstantPoolEntry<>(tag, bootstrapMethodIndex, nameTypeIndex);
+            case 19:
+            //Module - u2 index to a string with the module name
+            case 20:
+            //Package - u2 index to a string with the package name
+                return new ConstantPoolEntry<>(tag, classReader.nextShort());
             default:
                 return null;
         }
@@ -509,9 +588,10 @@ public final class ClassFileReader implements Closeable, ClassFile {
      */
     private static final class ClassFileBuffer implements Closeable {
         private final Path classPath;
-        private final SeekableByteChannel classChannel;
+        private final ReadableByteChannel classChannel;
         private final ByteBuffer buffer;
         private final boolean keepBuffer;
+        private long bytesRead;
 
         public ClassFileBuffer(Path classPath, boolean keepBuffer) throws IOException {
             this.classPath = classPath;
@@ -519,7 +599,7 @@ public final class ClassFileReader implements Closeable, ClassFile {
             this.keepBuffer = keepBuffer;
             if(keepBuffer) {
                 this.buffer = ByteBuffer.allocate((int) Files.size(this.classPath));
-                classChannel.read(buffer);
+                bytesRead += classChannel.read(buffer);
                 classChannel.close();
             } else {
                 this.buffer = ByteBuffer.allocate(1024);
@@ -527,6 +607,13 @@ public final class ClassFileReader implements Closeable, ClassFile {
 
         }
 
+        public ClassFileBuffer(Path classPath, ReadableByteChannel classChannel) {
+            this.classPath = classPath;
+            this.classChannel = classChannel;
+            this.keepBuffer = false;
+            this.buffer = ByteBuffer.allocate(1024);
+        }
+
         public boolean read() throws IOException {
 
             if(!buffer.hasRemaining()) buffer.clear();
@@ -537,10 +624,15 @@ public final class ClassFileReader implements Closeable, ClassFile {
             }
 
             int num = classChannel.read(buffer);
+            if(num > 0) bytesRead += num;
             buffer.rewind();
             return num > 0;
         }
 
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
         public ByteBuffer getBuffer() {
             return buffer;
         }
@@ -597,8 +689,18 @@ public final class ClassFileReader implements Closeable, ClassFile {
         }
 
         public void skipBytes(int n) throws IOException {
-            for(int i=0; i < n; i++) {
-                nextByte();
+            int remaining = n;
+            while(remaining > 0) {
+                int available = buffer.limit() - buffer.position();
+                if(available <= 0 || buffer.position() == 0) {
+                    //Let nextByte refill the buffer in the same way as any other read
+                    nextByte();
+                    remaining--;
+                } else {
+                    int skipped = Math.min(available, remaining);
+                    buffer.position(buffer.position() + skipped);
+                    remaining -= skipped;
+                }
             }
         }
 
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava.internal;
+
+import au.aklein.metajava.ClassElement;
+import au.aklein.metajava.exception.ClassPathException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A {@link java.util.Spliterator} which lazily reads and parses class files, one class path root at a time.
+ *
+ * Splitting first divides the remaining class path roots, and once only a single root remains, divides the range
+ * of class file entries left in that root. Only the entries of the root currently being read are held in memory.
+ */
+public final class ClassPathSpliterator implements Spliterator<ClassElement>, Closeable {
+    private static final int MIN_SPLIT_ENTRIES = 16;
+
+    private final PathProvider pathProvider;
+    private final boolean showError;
+    private final Queue<RootHandle> openRoots;
+
+    private final List<Path> roots;
+    private int rootIndex;
+    private int rootEnd;
+
+    private RootHandle currentRoot;
+    private List<Path> entries;
+    private int entryIndex;
+    private int entryEnd;
+
+    private ClassPathSpliterator(PathProvider pathProvider, boolean showError, Queue<RootHandle> openRoots,
+                                 List<Path> roots, int rootIndex, int rootEnd) {
+        this.pathProvider = pathProvider;
+        this.showError = showError;
+        this.openRoots = openRoots;
+        this.roots = roots;
+        this.rootIndex = rootIndex;
+        this.rootEnd = rootEnd;
+    }
+
+    /**
+     * Create a spliterator over every class file matching the package filter on the system CLASSPATH.
+     * @param packageFilter - the package to scan
+     * @param showError - if true, errors encountered while parsing class files are thrown
+     * @return a new ClassPathSpliterator
+     */
+    public static ClassPathSpliterator newClassPathSpliterator(String packageFilter, boolean showError) {
+        PathProvider pathProvider = PathProvider.newRootPathProvider(packageFilter);
+        List<Path> roots = pathProvider.getRootList();
+        return new ClassPathSpliterator(pathProvider, showError, new ConcurrentLinkedQueue<>(),
+                roots, 0, roots.size());
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ClassElement> action) {
+        while(true) {
+            while(entries != null && entryIndex < entryEnd) {
+                ClassFileReader classFile = ClassFileReader.newClassFileReader();
+                if(classFile.readClassFile(entries.get(entryIndex++), false)) {
+                    action.accept(classFile.generateClassElementBuilder().construct());
+                    return true;
+                } else if(showError) {
+                    throw classFile.getLastError();
+                }
+            }
+            releaseCurrentRoot();
+            if(rootIndex >= rootEnd) return false;
+            openRoot(roots.get(rootIndex++));
+        }
+    }
+
+    @Override
+    public Spliterator<ClassElement> trySplit() {
+        if(rootEnd - rootIndex >= 2) {
+            int mid = rootIndex + (rootEnd - rootIndex) / 2;
+            ClassPathSpliterator split = new ClassPathSpliterator(pathProvider, showError, openRoots,
+                    roots, mid, rootEnd);
+            this.rootEnd = mid;
+            return split;
+        }
+        if(entries != null && entryEnd - entryIndex >= MIN_SPLIT_ENTRIES) {
+            int mid = entryIndex + (entryEnd - entryIndex) / 2;
+            ClassPathSpliterator split = new ClassPathSpliterator(pathProvider, showError, openRoots,
+                    roots, rootEnd, rootEnd);
+            split.currentRoot = currentRoot.acquire();
+            split.entries = entries;
+            split.entryIndex = mid;
+            split.entryEnd = entryEnd;
+            this.entryEnd = mid;
+            return split;
+        }
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        if(rootIndex < rootEnd) return Long.MAX_VALUE;
+        return entries == null ? 0 : entryEnd - entryIndex;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    /**
+     * Closes any JAR files still held open by this spliterator or any spliterator split from it.
+     */
+    @Override
+    public void close() {
+        RootHandle root;
+        while((root = openRoots.poll()) != null) {
+            root.close();
+        }
+    }
+
+    private void openRoot(Path root) {
+        try {
+            if(PathProvider.isArchive(root)) {
+                FileSystem archive = PathProvider.openArchive(root);
+                currentRoot = new RootHandle(archive);
+                openRoots.add(currentRoot);
+                entries = new ArrayList<>();
+                for(Path archiveRoot : archive.getRootDirectories()) {
+                    entries.addAll(pathProvider.getRootPathList(archiveRoot));
+                }
+            } else {
+                currentRoot = new RootHandle(null);
+                entries = pathProvider.getRootPathList(root);
+            }
+        } catch (IOException e) {
+            throw new ClassPathException("Unable to enumerate class path root: "+root);
+        }
+        entryIndex = 0;
+        entryEnd = entries.size();
+    }
+
+    private void releaseCurrentRoot() {
+        if(currentRoot != null) {
+            currentRoot.release();
+            if(currentRoot.isClosed()) openRoots.remove(currentRoot);
+        }
+        currentRoot = null;
+        entries = null;
+    }
+
+    /**
+     * Reference counted handle to an open class path root, shared between spliterators reading the same JAR.
+     */
+    private static final class RootHandle implements Closeable {
+        private final FileSystem archive;
+        private final AtomicInteger references;
+
+        private RootHandle(FileSystem archive) {
+            this.archive = archive;
+            this.references = new AtomicInteger(1);
+        }
+
+        private RootHandle acquire() {
+            references.incrementAndGet();
+            return this;
+        }
+
+        private void release() {
+            if(references.decrementAndGet() == 0) close();
+        }
+
+        private boolean isClosed() {
+            return archive == null || !archive.isOpen();
+        }
+
+        @Override
+        public void close() {
+            if(archive == null) return;
+            try {
+                archive.close();
+            } catch (IOException e) {
+                throw new ClassPathException("Unable to close JAR: "+archive);
+            }
+        }
+    }
+}
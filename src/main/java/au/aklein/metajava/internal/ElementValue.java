@@ -16,6 +16,10 @@
 
 package au.aklein.metajava.internal;
 
+import au.aklein.metajava.AnnotationElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -121,6 +125,43 @@ public final class ElementValue {
         return tag == '@';
     }
 
+    /**
+     * Convert the element value to the plain object representation used by {@link au.aklein.metajava.AnnotationElement}.
+     * Primitive values are boxed to the type given by the tag, enum constants become
+     * {@link au.aklein.metajava.AnnotationElement.EnumValue}, classes become
+     * {@link au.aklein.metajava.AnnotationElement.TypeValue}, nested annotations become AnnotationElements and arrays
+     * become unmodifiable lists.
+     * @param names - the table sharing type names and annotations between the class files of a scan
+     * @return the converted value
+     */
+    public Object toValue(NameTable names) {
+        switch (tag) {
+            case 'B': return ((Integer) constValue.getValue()).byteValue();
+            case 'C': return (char) ((Integer) constValue.getValue()).intValue();
+            case 'S': return ((Integer) constValue.getValue()).shortValue();
+            case 'Z': return ((Integer) constValue.getValue()) != 0;
+            case 'D':
+            case 'F':
+            case 'I':
+            case 'J':
+            case 's': return constValue.getValue();
+            case 'e': return new AnnotationElement.EnumValue(names.intern(descriptorName(constType)), constName);
+            case 'c': return new AnnotationElement.TypeValue(names.intern(classInfo));
+            case '@': return names.toAnnotation(annotationValue);
+            default:
+                List<Object> values = new ArrayList<>(elementValues.size());
+                for(ElementValue elementValue : elementValues) {
+                    values.add(elementValue.toValue(names));
+                }
+                return Collections.unmodifiableList(values);
+        }
+    }
+
+    static String descriptorName(String descriptor) {
+        if(descriptor.startsWith("L") && descriptor.endsWith(";")) return descriptor.substring(1, descriptor.length()-1);
+        return descriptor;
+    }
+
     public static boolean tagIsPrimative(byte tag) {
         return tag == 'B' || tag == 'C' || tag == 'D' || tag == 'F' ||
                 tag == 'I' || tag == 'J' || tag == 'S' || tag == 'Z' ||
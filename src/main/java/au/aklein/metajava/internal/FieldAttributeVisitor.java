@@ -25,6 +25,11 @@ public final class FieldAttributeVisitor extends AttributeVisitor {
     private CodeAttributeVisitor methodCode;
 
     public FieldAttributeVisitor() {
+        this(NameTable.newNameTable());
+    }
+
+    public FieldAttributeVisitor(NameTable names) {
+        super(names);
         this.methodCode = new CodeAttributeVisitor();
     }
 }
@@ -28,27 +28,31 @@ import java.util.List;
 public final class MethodAttributeVisitor extends AttributeVisitor {
 
     private List<AnnotationElement> annotations;
-    private List<List<AnnotationElement>> parameterAnnotations;
+    private ArrayList<List<AnnotationElement>> parameterAnnotations;
     private CodeAttributeVisitor methodCodeAttribute;
 
     public MethodAttributeVisitor() {
+        this(NameTable.newNameTable());
+    }
+
+    public MethodAttributeVisitor(NameTable names) {
+        super(names);
         this.parameterAnnotations = new ArrayList<>();
         this.methodCodeAttribute = new CodeAttributeVisitor();
     }
 
 
     public List<List<AnnotationElement>> getParameterAnnotations() {
-        return parameterAnnotations;
+        return trimmed(parameterAnnotations);
     }
 
     public void visitParameterAnnotation(ParameterAnnotationAttribute annotationsAttribute) {
         for(List<AnnotationData> parameter : annotationsAttribute.getParameterAnnotations()) {
-            List<AnnotationElement> annotationsOnParameter = new ArrayList<>();
+            ArrayList<AnnotationElement> annotationsOnParameter = new ArrayList<>(parameter.size());
             for(AnnotationData annotation : parameter) {
-                String annotationName = annotation.getType();
-                annotationsOnParameter.add(new AnnotationElement(annotationName.substring(1, annotationName.length()-1)));
+                annotationsOnParameter.add(getNames().toAnnotation(annotation));
             }
-            parameterAnnotations.add(annotationsOnParameter);
+            parameterAnnotations.add(trimmed(annotationsOnParameter));
         }
     }
 
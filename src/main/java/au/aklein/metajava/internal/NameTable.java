@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 Andrew Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package au.aklein.metajava.internal;
+
+import au.aklein.metajava.AnnotationElement;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of the names, descriptors and annotations read by the class files of a single scan.
+ *
+ * Every class file read with the same table shares one String instance per distinct name or descriptor, one
+ * dotted class name per class, and one {@link au.aklein.metajava.AnnotationElement} per annotation type which is
+ * used without element values. Equal values therefore compare by identity, and a scan of many classes holds each
+ * value once. Annotations with element values are created per occurrence, with their type name shared.
+ */
+public final class NameTable {
+    private final Map<String, String> names;
+    private final Map<String, String> classNames;
+    private final Map<String, AnnotationElement> annotations;
+
+    private NameTable() {
+        this.names = new ConcurrentHashMap<>();
+        this.classNames = new ConcurrentHashMap<>();
+        this.annotations = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Create an empty table, usually one per scan.
+     * @return a new NameTable
+     */
+    public static NameTable newNameTable() {
+        return new NameTable();
+    }
+
+    /**
+     * Returns the canonical instance of a name or descriptor.
+     * @param name - the string, or null
+     * @return an equal string shared by every class file read with this table
+     */
+    public String intern(String name) {
+        if(name == null) return null;
+        String canonical = names.putIfAbsent(name, name);
+        return canonical == null ? name : canonical;
+    }
+
+    /**
+     * Returns a read-only list of canonical names, without spare capacity.
+     * @param values - the names
+     * @return the interned list
+     */
+    public List<String> internAll(List<String> values) {
+        if(values.isEmpty()) return Collections.emptyList();
+        String[] canonical = new String[values.size()];
+        for(int i=0; i < canonical.length; i++) {
+            canonical[i] = intern(values.get(i));
+        }
+        return Collections.unmodifiableList(Arrays.asList(canonical));
+    }
+
+    /**
+     * Returns the canonical period (.) delimited form of an internal class name.
+     * @param internalName - the internal name, such as <code>java/lang/String</code>, or null
+     * @return the class name, such as <code>java.lang.String</code>
+     */
+    public String toClassName(String internalName) {
+        if(internalName == null) return null;
+        String className = classNames.get(internalName);
+        if(className == null) {
+            className = internalName.replace('/', '.');
+            String existing = classNames.putIfAbsent(internalName, className);
+            if(existing != null) className = existing;
+        }
+        return className;
+    }
+
+    /**
+     * Returns an {@link au.aklein.metajava.AnnotationElement} for an annotation read from a class file. Annotations
+     * without element values are shared for each annotation type, and are looked up by the type descriptor so no
+     * name is extracted once the type has been seen.
+     * @param annotation - the annotation data read from the class file
+     * @return the canonical or new AnnotationElement
+     */
+    public AnnotationElement toAnnotation(AnnotationData annotation) {
+        if(!annotation.getElementValuePairs().isEmpty()) return annotation.toElement(this);
+
+        AnnotationElement canonical = annotations.get(annotation.getType());
+        if(canonical == null) {
+            canonical = new AnnotationElement(intern(ElementValue.descriptorName(annotation.getType())));
+            AnnotationElement existing = annotations.putIfAbsent(annotation.getType(), canonical);
+            if(existing != null) canonical = existing;
+        }
+        return canonical;
+    }
+}
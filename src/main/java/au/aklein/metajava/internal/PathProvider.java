@@ -20,10 +20,15 @@ import au.aklein.metajava.exception.ClassPathException;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.file.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * Obtain a list of paths to .class files in directories and JAR files
@@ -51,6 +56,90 @@ public final class PathProvider {
         return newProvider;
     }
 
+    /**
+     * Create a PathProvider which does not enumerate the class path up front. Paths are obtained per root through
+     * {@link #getRootPathList(java.nio.file.Path)}.
+     * @param packageName - the package to scan
+     * @return a new PathProvider instance
+     */
+    public static PathProvider newRootPathProvider(String packageName) {
+        return new PathProvider(packageName);
+    }
+
+    /**
+     * Return the roots (directories and JAR files) of the system CLASSPATH.
+     * @return a List of class path roots
+     */
+    public List<Path> getRootList() {
+        return getClassPaths();
+    }
+
+    /**
+     * Return a list of paths of the .class files under a single class path root. JAR files are opened through the
+     * supplied file system, which must remain open for as long as the returned paths are read.
+     * @param root - a directory root, or the root directory of an opened JAR file system
+     * @return a List of file paths
+     * @throws IOException
+     */
+    public List<Path> getRootPathList(Path root) throws IOException {
+        List<Path> rootPaths = new ArrayList<>();
+        rootPaths.add(root);
+        return generatePaths(rootPaths);
+    }
+
+    /**
+     * Determines if the given class path root is a JAR file.
+     * @param root - a class path root
+     * @return True if the root is a JAR file, otherwise false.
+     */
+    public static boolean isArchive(Path root) {
+        return root.toString().endsWith(".jar") && !Files.isDirectory(root);
+    }
+
+    /**
+     * Open a JAR file as a {@link java.nio.file.FileSystem}. The caller is responsible for closing it.
+     * @param root - the path to the JAR file
+     * @return the opened FileSystem
+     */
+    public static FileSystem openArchive(Path root) {
+        try {
+            return FileSystems.newFileSystem(root, Thread.currentThread().getContextClassLoader());
+        } catch (IOException e) {
+            throw new ClassPathException("Unable to access JAR at: "+root);
+        }
+    }
+
+    /**
+     * Locate a single class file through the context class loader and read it, without loading the class. Class
+     * files inside JAR files are read while the JAR's file system is open.
+     * @param internalName - the internal name of the class, delimited by forward slashes
+     * @param reader - reads the class file at the given path
+     * @param <T> - the type of value read from the class file
+     * @return the value returned by the reader, or null if the class file could not be found
+     */
+    public static <T> T readClassResource(String internalName, Function<Path, T> reader) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        String resourceName = internalName + ".class";
+        URL resource = classLoader == null ? ClassLoader.getSystemResource(resourceName)
+                                           : classLoader.getResource(resourceName);
+        if(resource == null) return null;
+
+        try {
+            URI uri = resource.toURI();
+            try {
+                return reader.apply(Paths.get(uri));
+            } catch (FileSystemNotFoundException e) {
+                synchronized (PathProvider.class) {
+                    try(FileSystem fs = FileSystems.newFileSystem(uri, Collections.emptyMap(), classLoader)) {
+                        return reader.apply(fs.provider().getPath(uri));
+                    }
+                }
+            }
+        } catch (URISyntaxException | IOException | IllegalArgumentException e) {
+            throw new ClassPathException("Unable to access class file: "+resource);
+        }
+    }
+
     private List<Path> handleJAR(Path path) throws IOException {
         List<Path> rootPaths = new ArrayList<>();
         try(FileSystem fs = FileSystems.newFileSystem(path, Thread.currentThread().getContextClassLoader())) {
@@ -63,7 +152,12 @@ public final class PathProvider {
         }
     }
 
-    private boolean matchPath(Path path) {
+    /**
+     * Determines if a path falls within the package being scanned.
+     * @param path - the path to test
+     * @return True if the path matches the package filter, otherwise false.
+     */
+    public boolean matchPath(Path path) {
         return path.toString().contains(includeFilter.replace(".", "/")) ||
                path.toString().contains(includeFilter.replace(".", "\\"));
     }
@@ -0,0 +1,174 @@
+package au.aklein.metajava;
+
+import au.aklein.metajava.support.TestAnnotation;
+import org.junit.Test;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that conditions answered through the element index select exactly the elements which satisfy the condition
+ * when tested one element at a time, both sequentially and when the scan is large enough to be filtered in parallel.
+ */
+public class ConditionTest {
+    private static final String SCANNED_PACKAGE = "au.aklein.metajava";
+    private static final String SUPPORT_PACKAGE = "au.aklein.metajava.support";
+
+    /** The number of candidates at which {@link Condition} splits filtering across the common pool. */
+    private static final int PARALLEL_THRESHOLD = 8192;
+    private static final int COPIES = 24;
+    private static final int THREADS = 4;
+
+    private static final ElementType[] TARGET_TYPES = {
+        ElementType.TYPE, ElementType.METHOD, ElementType.CONSTRUCTOR, ElementType.FIELD, ElementType.PARAMETER
+    };
+
+    private static final MetaJava SCAN = MetaJava.scanClassPath(SCANNED_PACKAGE, false);
+
+    @Test
+    public void indexedConditionsMatchPerElementTests() {
+        ElementIndex index = SCAN.getIndex();
+        for(ElementType type : TARGET_TYPES) {
+            for(Condition condition : getConditions()) {
+                assertSameSelection(index, type, condition);
+            }
+        }
+    }
+
+    /**
+     * Filtering splits its work whenever it runs inside a fork-join pool, so the comparison runs in a pool of its own
+     * to divide the work even where the common pool has a single thread.
+     */
+    @Test
+    public void indexedConditionsMatchParallelFilter() throws Throwable {
+        List<ClassElement> topLevel = new ArrayList<>();
+        for(ClassElement type : SCAN.getPackageClasses(SCANNED_PACKAGE, true)) {
+            if(!type.isInner()) topLevel.add(type);
+        }
+        List<ClassElement> copies = new ArrayList<>();
+        for(int copy=0; copy < COPIES; copy++) {
+            copies.addAll(topLevel);
+        }
+        ElementIndex index = ElementIndex.newElementIndex(copies);
+        assertTrue(index.size(ElementType.METHOD) >= PARALLEL_THRESHOLD);
+        assertTrue(index.size(ElementType.PARAMETER) >= PARALLEL_THRESHOLD);
+
+        ForkJoinPool pool = new ForkJoinPool(THREADS);
+        try {
+            pool.submit(() -> {
+                for(ElementType type : TARGET_TYPES) {
+                    for(Condition condition : getConditions()) {
+                        assertSameSelection(index, type, condition);
+                    }
+                }
+            }).get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void batchedFilterMatchesPerElementTests() {
+        ElementIndex index = SCAN.getIndex();
+        Condition[] conditions = getConditions().toArray(new Condition[0]);
+        for(ElementType type : TARGET_TYPES) {
+            int size = index.size(type);
+            int[][] filtered = Condition.filter(index, type, conditions, null, size);
+            for(int i=0; i < conditions.length; i++) {
+                assertIds(type + " " + i, getExpected(index, type, conditions[i]), filtered[i]);
+            }
+        }
+    }
+
+    @Test
+    public void queriesMatchPerElementTests() {
+        ElementIndex index = SCAN.getIndex();
+        for(ElementType type : TARGET_TYPES) {
+            for(Condition condition : getConditions()) {
+                int expected = getExpected(index, type, condition).length;
+                assertEquals(expected, SCAN.where(type).matching(condition).count());
+                assertEquals(expected, SCAN.where(type).matching(condition).get(type).size());
+            }
+        }
+    }
+
+    @Test
+    public void conditionsSelectSomething() {
+        ElementIndex index = SCAN.getIndex();
+        assertTrue(getExpected(index, ElementType.METHOD, Condition.annotatedWith(Test.class)).length > 0);
+        assertTrue(getExpected(index, ElementType.TYPE, Condition.annotatedWith(TestAnnotation.class)).length > 0);
+        assertEquals(1, getExpected(index, ElementType.TYPE, Condition.named("au.aklein.metajava.MetaJava")).length);
+        assertTrue(getExpected(index, ElementType.TYPE,
+                               Condition.declares(ElementType.METHOD, Condition.annotatedWith(Test.class))).length > 0);
+        assertTrue(getExpected(index, ElementType.PARAMETER,
+                               Condition.declaredBy(Condition.inPackage(SCANNED_PACKAGE))).length > 0);
+    }
+
+    private static List<Condition> getConditions() {
+        Condition test = Condition.annotatedWith(Test.class);
+        Condition support = Condition.inPackage(SUPPORT_PACKAGE);
+        Condition string = Condition.hasParameterType(String.class);
+        Condition getter = Condition.nameMatches("(get|is).*");
+        Condition annotated = Condition.annotatedWith(TestAnnotation.class);
+        Condition metaJava = Condition.named("au.aklein.metajava.MetaJava");
+
+        return Arrays.asList(
+            test,
+            Condition.not(test),
+            Condition.and(test, getter.negate()),
+            Condition.and(support, Condition.withModifiers(Modifier.PUBLIC)),
+            Condition.or(Condition.named("au/aklein/metajava/Condition"), annotated),
+            Condition.or(getter, Condition.parameterCount(0)),
+            Condition.or(string, Condition.not(support)),
+            Condition.not(Condition.and(Condition.returns(void.class), Condition.withoutModifiers(Modifier.STATIC))),
+            Condition.and(string, Condition.returns(boolean.class)),
+            Condition.and(metaJava, Condition.nameMatches("x").negate()),
+            Condition.declaredBy(annotated),
+            Condition.declaredBy(Condition.or(support, metaJava)),
+            Condition.and(Condition.declaredBy(Condition.nameMatches(".*Test")), Condition.parameterCount(0).negate()),
+            Condition.declares(ElementType.METHOD, test),
+            Condition.declares(ElementType.PARAMETER, string),
+            Condition.declares(ElementType.FIELD, Condition.withModifiers(Modifier.STATIC)),
+            Condition.not(Condition.declares(ElementType.CONSTRUCTOR, Condition.parameterCount(0))),
+            Condition.declaredBy(Condition.declares(ElementType.METHOD, test).and(getter.negate())));
+    }
+
+    private static void assertSameSelection(ElementIndex index, ElementType type, Condition condition) {
+        int[] expected = getExpected(index, type, condition);
+        assertIds(type + " select", expected, condition.select(index, type));
+
+        for(int limit : new int[] {1, 3, expected.length / 2 + 1}) {
+            int[] first = Arrays.copyOf(expected, Math.min(limit, expected.length));
+            assertIds(type + " limit " + limit, first, condition.select(index, type, limit));
+        }
+
+        int[] all = new int[index.size(type)];
+        for(int id=0; id < all.length; id++) {
+            all[id] = id;
+        }
+        assertIds(type + " filter", expected, condition.filter(index, type, all, all.length));
+        assertIds(type + " scan", expected, condition.scan(index, type, all, all.length, Integer.MAX_VALUE));
+    }
+
+    private static int[] getExpected(ElementIndex index, ElementType type, Condition condition) {
+        int[] matches = new int[index.size(type)];
+        int count = 0;
+        for(int id=0; id < matches.length; id++) {
+            if(condition.test(index, type, id)) matches[count++] = id;
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private static void assertIds(String message, int[] expected, int[] actual) {
+        assertEquals(message, Arrays.toString(expected), Arrays.toString(actual));
+    }
+}
@@ -0,0 +1,150 @@
+package au.aklein.metajava;
+
+import au.aklein.metajava.exception.ClassFileException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the parsing of generic signatures from scanned class files, and the resolution of parameterized
+ * implementors through generic supertypes.
+ */
+public class GenericSignatureTest {
+    private static final String SCANNED_PACKAGE = "au.aklein.metajava.support.generics";
+    private static final String CONTAINER = "au/aklein/metajava/support/generics/Container";
+
+    private static final MetaJava SCAN = MetaJava.scanClassPath(SCANNED_PACKAGE, false);
+
+    @Test
+    public void innerClassOfParameterizedClass() {
+        GenericType entry = getField(CONTAINER, "entry").getGenericSignature().getType();
+
+        assertEquals(GenericType.Kind.CLASS, entry.getKind());
+        assertEquals(CONTAINER + "$Entry", entry.getName());
+        assertEquals(1, entry.getTypeArguments().size());
+        assertEquals("java/lang/Integer", entry.getTypeArguments().get(0).getName());
+
+        GenericType owner = entry.getOwnerType();
+        assertEquals(CONTAINER, owner.getName());
+        assertEquals(1, owner.getTypeArguments().size());
+        assertEquals("java/lang/String", owner.getTypeArguments().get(0).getName());
+
+        GenericType key = getField(CONTAINER + "$Entry", "key").getGenericSignature().getType();
+        assertEquals(GenericType.Kind.TYPE_VARIABLE, key.getKind());
+        assertEquals("K", key.getName());
+    }
+
+    @Test
+    public void ownerWithoutTypeArgumentsIsDropped() {
+        GenericType inner = GenericSignature.ofField("Lx/Outer.Inner<Ljava/lang/String;>;").getType();
+
+        assertEquals("x/Outer$Inner", inner.getName());
+        assertNull(inner.getOwnerType());
+        assertEquals(1, inner.getTypeArguments().size());
+    }
+
+    @Test
+    public void wildcardBounds() {
+        GenericType sink = getField(CONTAINER, "sink").getGenericSignature().getType();
+        GenericType lower = sink.getTypeArguments().get(0);
+        assertEquals(GenericType.Kind.WILDCARD, lower.getKind());
+        assertTrue(lower.isLowerBound());
+        assertEquals("java/lang/Number", lower.getBound().getName());
+        assertEquals("java.util.List<? super java.lang.Number>", sink.toString());
+
+        GenericType source = getField(CONTAINER, "source").getGenericSignature().getType();
+        GenericType upper = source.getTypeArguments().get(0);
+        assertEquals(GenericType.Kind.WILDCARD, upper.getKind());
+        assertFalse(upper.isLowerBound());
+        assertEquals("java/lang/CharSequence", upper.getBound().getName());
+        assertEquals("java.util.List<? extends java.lang.CharSequence>", source.toString());
+
+        GenericType unbounded = GenericSignature.ofField("Ljava/util/List<*>;").getType().getTypeArguments().get(0);
+        assertEquals(GenericType.Kind.WILDCARD, unbounded.getKind());
+        assertNull(unbounded.getBound());
+    }
+
+    @Test
+    public void typeVariableInThrowsClause() {
+        MethodElement perform = null;
+        for(MethodElement method : getType(CONTAINER).getMethods()) {
+            if(method.getName().equals("perform")) perform = method;
+        }
+        GenericSignature signature = perform.getGenericSignature();
+
+        assertEquals(1, signature.getTypeParameters().size());
+        TypeParameter typeParameter = signature.getTypeParameters().get(0);
+        assertEquals("E", typeParameter.getName());
+        assertEquals("java/lang/Exception", typeParameter.getBounds().get(0).getName());
+
+        assertTrue(signature.getParameterTypes().isEmpty());
+        assertEquals(GenericType.Kind.PRIMITIVE, signature.getReturnType().getKind());
+        assertEquals(2, signature.getExceptionTypes().size());
+        assertEquals(GenericType.Kind.TYPE_VARIABLE, signature.getExceptionTypes().get(0).getKind());
+        assertEquals("E", signature.getExceptionTypes().get(0).getName());
+        assertEquals("java/io/IOException", signature.getExceptionTypes().get(1).getName());
+    }
+
+    @Test
+    public void malformedSignatures() {
+        assertInvalid(() -> GenericSignature.ofClass("Ljava/lang/Object"));
+        assertInvalid(() -> GenericSignature.ofClass("Ljava/lang/Object;X"));
+        assertInvalid(() -> GenericSignature.ofMethod("(Ljava/lang/String;"));
+        assertInvalid(() -> GenericSignature.ofMethod("()V^"));
+        assertInvalid(() -> GenericSignature.ofField("Ljava/util/List<+>;"));
+        assertInvalid(() -> GenericSignature.ofField("I"));
+    }
+
+    @Test
+    public void implementorsThroughGenericSuperclass() {
+        List<String> orderHandlers = getNames(SCAN.getGenericImplementors(SCANNED_PACKAGE + ".Handler",
+                                                                          SCANNED_PACKAGE + ".OrderEvent"));
+        assertEquals(1, orderHandlers.size());
+        assertEquals("au/aklein/metajava/support/generics/OrderHandler", orderHandlers.get(0));
+
+        List<String> stringHandlers = getNames(SCAN.getGenericImplementors(SCANNED_PACKAGE + ".Handler",
+                                                                           "java.lang.String"));
+        assertEquals(1, stringHandlers.size());
+        assertEquals("au/aklein/metajava/support/generics/StringHandler", stringHandlers.get(0));
+
+        assertEquals(3, SCAN.getImplementors(SCANNED_PACKAGE + ".Handler", true).size());
+    }
+
+    private static ClassElement getType(String name) {
+        for(ClassElement classElement : SCAN.getPackageClasses(SCANNED_PACKAGE, true)) {
+            if(classElement.getName().equals(name)) return classElement;
+        }
+        throw new AssertionError("Not scanned: " + name);
+    }
+
+    private static FieldElement getField(String typeName, String fieldName) {
+        for(FieldElement field : getType(typeName).getFields()) {
+            if(field.getName().equals(fieldName)) return field;
+        }
+        throw new AssertionError("No field " + fieldName + " in " + typeName);
+    }
+
+    private static List<String> getNames(List<ClassElement> classElements) {
+        List<String> names = new ArrayList<>();
+        for(ClassElement classElement : classElements) {
+            names.add(classElement.getName());
+        }
+        return names;
+    }
+
+    private static void assertInvalid(Runnable parse) {
+        try {
+            parse.run();
+            fail("Expected a ClassFileException");
+        } catch (ClassFileException e) {
+            assertTrue(e.getMessage().startsWith("Invalid generic signature: "));
+        }
+    }
+}
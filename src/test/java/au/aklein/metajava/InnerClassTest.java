@@ -0,0 +1,77 @@
+package au.aklein.metajava;
+
+import au.aklein.metajava.support.local.LocalClassHolder;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that inner classes are linked to the class declaring them only, and not to every class which refers to them,
+ * and that they are found by the same simple name as {@link Class#getSimpleName()} gives them.
+ */
+public class InnerClassTest {
+    private static final String SCANNED_PACKAGE = "au.aklein.metajava.support.nesting";
+    private static final String OUTER = "au/aklein/metajava/support/nesting/Outer";
+
+    private static final String LOCAL_PACKAGE = "au.aklein.metajava.support.local";
+
+    private static final MetaJava SCAN = MetaJava.scanClassPath(SCANNED_PACKAGE, false);
+
+    @Test
+    public void nestedClassUsedFromSeveralClassesIsIndexedOnce() {
+        assertEquals(1, SCAN.where(ElementType.TYPE).matching(Condition.named(OUTER + "$Shared")).count());
+        assertEquals(1, SCAN.where(ElementType.TYPE).matching(Condition.named(OUTER + "$Shared$Deep")).count());
+
+        List<ClassElement> types = SCAN.getPackageClasses(SCANNED_PACKAGE, true);
+        Set<String> names = new HashSet<>();
+        for(ClassElement type : types) {
+            names.add(type.getName());
+        }
+        assertEquals(5, types.size());
+        assertEquals(5, names.size());
+    }
+
+    @Test
+    public void nestedClassesBelongToTheirOutermostClass() {
+        for(ClassElement type : SCAN.getPackageClasses(SCANNED_PACKAGE, false)) {
+            if(type.isInner()) continue;
+            Set<String> innerNames = new HashSet<>();
+            for(ClassElement innerClass : type.getInnerClasses()) {
+                innerNames.add(innerClass.getName());
+            }
+            if(type.getName().equals(OUTER)) {
+                assertEquals(2, innerNames.size());
+                assertTrue(innerNames.contains(OUTER + "$Shared"));
+                assertTrue(innerNames.contains(OUTER + "$Shared$Deep"));
+            } else {
+                assertTrue(type.getName() + " holds " + innerNames, innerNames.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void membersOfNestedClassesAreNotRepeated() {
+        List<MethodElement> constructors = SCAN.where(ElementType.CONSTRUCTOR)
+                                               .matching(Condition.nameMatches(".*")).get(ElementType.CONSTRUCTOR);
+        assertEquals(5, constructors.size());
+        assertEquals(5, new HashSet<>(constructors).size());
+    }
+
+    @Test
+    public void localClassesAreFoundByTheirSimpleName() {
+        MetaJava scan = MetaJava.scanClassPath(LOCAL_PACKAGE, false);
+        Class<?> localClass = new LocalClassHolder().getLocalClass();
+
+        List<ClassElement> found = scan.getClassesBySimpleName(localClass.getSimpleName());
+        assertEquals(1, found.size());
+        assertEquals(localClass.getName(), found.get(0).getClassName());
+        assertTrue(scan.getClassesBySimpleName("1Local").isEmpty());
+        assertEquals(1, scan.getClassesBySimpleName("LocalClassHolder").size());
+        assertEquals(3, scan.getPackageClasses(LOCAL_PACKAGE, false).size());
+    }
+}
@@ -0,0 +1,77 @@
+package au.aklein.metajava;
+
+import au.aklein.metajava.support.AnnotatedClass;
+import au.aklein.metajava.support.SimpleClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that lazily scanned members are read from the current contents of an archive.
+ */
+public class MemberSourceTest {
+    private static final String SCANNED_PACKAGE = "au.aklein.metajava.support";
+
+    @Test
+    public void archiveRewrittenInPlaceIsOpenedAgain() throws Exception {
+        Path directory = Files.createTempDirectory("metajava");
+        Path archive = directory.resolve("members.jar");
+        String classPath = System.getProperty("java.class.path");
+        try {
+            writeArchive(archive, 0);
+            System.setProperty("java.class.path", archive.toString());
+            MetaJava scan = MetaJava.scanClassPath(SCANNED_PACKAGE, false, StorageMode.LAZY);
+
+            //Reading the first class opens the archive, which is then rewritten with its entries at other offsets
+            assertEquals(4, getType(scan, SimpleClass.class).getMethods().size());
+            writeArchive(archive, 1 << 16);
+
+            assertEquals(1, getType(scan, AnnotatedClass.class).getMethods().size());
+            assertEquals("<init>", getType(scan, AnnotatedClass.class).getMethods().get(0).getName());
+        } finally {
+            System.setProperty("java.class.path", classPath);
+            Files.deleteIfExists(archive);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Writes an archive holding two scanned classes, after an entry of the given size.
+     */
+    private static void writeArchive(Path archive, int padding) throws IOException {
+        try(ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(archive))) {
+            if(padding > 0) {
+                output.putNextEntry(new ZipEntry("padding"));
+                output.setLevel(0);
+                output.write(new byte[padding]);
+                output.closeEntry();
+            }
+            writeClass(output, SimpleClass.class);
+            writeClass(output, AnnotatedClass.class);
+        }
+    }
+
+    private static void writeClass(ZipOutputStream output, Class<?> type) throws IOException {
+        String name = type.getName().replace('.', '/') + ".class";
+        output.putNextEntry(new ZipEntry(name));
+        try(InputStream input = type.getClassLoader().getResourceAsStream(name)) {
+            byte[] buffer = new byte[4096];
+            for(int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                output.write(buffer, 0, read);
+            }
+        }
+        output.closeEntry();
+    }
+
+    private static ClassElement getType(MetaJava scan, Class<?> type) {
+        return scan.getClassesBySimpleName(type.getSimpleName()).get(0);
+    }
+}
@@ -0,0 +1,95 @@
+package au.aklein.metajava;
+
+import au.aklein.metajava.support.TestAnnotation;
+import org.junit.Test;
+
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that queries evaluated together in a batch find the same elements as the same queries run one at a time.
+ */
+public class MetaBatchTest {
+    private static final String SCANNED_PACKAGE = "au.aklein.metajava";
+    private static final String SUPPORT_PACKAGE = "au.aklein.metajava.support";
+
+    private static final MetaJava SCAN = MetaJava.scanClassPath(SCANNED_PACKAGE, false);
+
+    @Test
+    public void batchedQueriesMatchSingleQueries() {
+        Condition test = Condition.annotatedWith(Test.class);
+        Condition getter = Condition.nameMatches("(get|is).*");
+        ElementType[] types = {
+            ElementType.METHOD, ElementType.METHOD, ElementType.TYPE, ElementType.PARAMETER, ElementType.METHOD,
+            ElementType.TYPE, ElementType.FIELD, ElementType.CONSTRUCTOR, ElementType.PARAMETER, ElementType.TYPE
+        };
+        List<Condition> conditions = Arrays.asList(
+            test,
+            getter,
+            Condition.declares(ElementType.METHOD, test),
+            Condition.hasParameterType(String.class),
+            Condition.and(getter, Condition.parameterCount(0)),
+            Condition.or(Condition.inPackage(SUPPORT_PACKAGE), Condition.nameMatches(".*Batch.*")),
+            Condition.withModifiers(Modifier.STATIC | Modifier.FINAL),
+            Condition.not(Condition.declaredBy(Condition.annotatedWith(TestAnnotation.class))),
+            Condition.declaredBy(getter),
+            Condition.annotatedWith(TestAnnotation.class));
+
+        MetaJava.MetaBatch batch = SCAN.batch();
+        for(int query=0; query < conditions.size(); query++) {
+            assertEquals(query, batch.add(types[query], conditions.get(query)));
+        }
+        List<MetaJava.MetaResult> results = batch.evaluate();
+
+        assertEquals(conditions.size(), results.size());
+        for(int query=0; query < conditions.size(); query++) {
+            MetaJava.MetaResult expected = SCAN.where(types[query]).matching(conditions.get(query));
+            MetaJava.MetaResult actual = results.get(query);
+            assertTrue(types[query] + " " + query, expected.count() > 0);
+            assertEquals(types[query] + " " + query, expected.get(types[query]), actual.get(types[query]));
+            assertEquals(expected.get(ElementType.TYPE), actual.get(ElementType.TYPE));
+            assertEquals(expected.count(), actual.count());
+        }
+    }
+
+    @Test
+    public void batchedElementSearchMatchesSingleQuery() {
+        ClassElement annotated = SCAN.getClassesBySimpleName("AnnotatedClass").get(0);
+        MethodElement method = SCAN.getClassesBySimpleName("MethodAnnotatedClass").get(0).getMethods().get(0);
+
+        MetaJava.MetaBatch batch = SCAN.batch();
+        int byType = batch.add(ElementType.TYPE, annotated);
+        int byMethod = batch.add(ElementType.TYPE, method);
+        List<MetaJava.MetaResult> results = batch.evaluate();
+
+        assertEquals(SCAN.where(ElementType.TYPE).has(annotated).get(ElementType.TYPE),
+                     results.get(byType).get(ElementType.TYPE));
+        assertEquals(SCAN.where(ElementType.TYPE).has(method).get(ElementType.TYPE),
+                     results.get(byMethod).get(ElementType.TYPE));
+        assertEquals(1, results.get(byMethod).count());
+    }
+
+    @Test
+    public void batchedResultsCanBeCombined() {
+        MetaJava.MetaBatch batch = SCAN.batch();
+        int tests = batch.add(ElementType.METHOD, Condition.annotatedWith(Test.class));
+        int testClasses = batch.add(ElementType.TYPE, Condition.nameMatches(".*Batch.*"));
+        List<MetaJava.MetaResult> results = batch.evaluate();
+
+        Condition batchTests = Condition.annotatedWith(Test.class)
+                                        .and(Condition.declaredBy(Condition.nameMatches(".*Batch.*")));
+        MetaJava.MetaResult expected = SCAN.where(ElementType.METHOD).matching(batchTests);
+        assertEquals(4, expected.count());
+        assertEquals(expected.get(ElementType.METHOD),
+                     results.get(tests).intersect(results.get(testClasses)).get(ElementType.METHOD));
+    }
+
+    @Test
+    public void emptyBatch() {
+        assertTrue(SCAN.batch().evaluate().isEmpty());
+    }
+}
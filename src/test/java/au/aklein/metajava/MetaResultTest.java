@@ -0,0 +1,183 @@
+package au.aklein.metajava;
+
+import au.aklein.metajava.support.TestAnnotation;
+import org.junit.Test;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that relating results to other element types, and combining results, agrees with the relationships
+ * between the elements themselves.
+ */
+public class MetaResultTest {
+    private static final String SCANNED_PACKAGE = "au.aklein.metajava";
+
+    private static final ElementType[] TARGET_TYPES = {
+        ElementType.TYPE, ElementType.METHOD, ElementType.CONSTRUCTOR, ElementType.FIELD, ElementType.PARAMETER
+    };
+
+    private static final MetaJava SCAN = MetaJava.scanClassPath(SCANNED_PACKAGE, false);
+
+    @Test
+    public void relatedElementsMatchDeclarations() {
+        for(Query query : getQueries()) {
+            List<Element> found = query.get().get(query.type);
+            assertTrue(query.type + " " + query.condition, found.size() > 0);
+            for(ElementType targetType : TARGET_TYPES) {
+                assertEquals(query.type + " to " + targetType, getRelated(found, targetType),
+                             query.get().get(targetType));
+            }
+        }
+    }
+
+    @Test
+    public void combinedResultsMatchSetOperations() {
+        for(Query first : getQueries()) {
+            List<Element> found = first.get().get(first.type);
+            for(Query second : getQueries()) {
+                Set<Element> other = new HashSet<>(getRelated(second.get().get(second.type), first.type));
+                String message = first.type + " with " + second.type;
+
+                List<Element> union = new ArrayList<>();
+                List<Element> intersection = new ArrayList<>();
+                List<Element> difference = new ArrayList<>();
+                for(Element element : getAll(first.type)) {
+                    boolean inFirst = found.contains(element);
+                    boolean inSecond = other.contains(element);
+                    if(inFirst || inSecond) union.add(element);
+                    if(inFirst && inSecond) intersection.add(element);
+                    if(inFirst && !inSecond) difference.add(element);
+                }
+
+                assertEquals(message, union, first.get().union(second.get()).get(first.type));
+                assertEquals(message, intersection, first.get().intersect(second.get()).get(first.type));
+                assertEquals(message, difference, first.get().subtract(second.get()).get(first.type));
+                assertEquals(difference.size(), first.get().subtract(second.get()).count());
+            }
+        }
+    }
+
+    @Test
+    public void combinedResultsCanBeCombinedAgain() {
+        MetaJava.MetaResult tests = SCAN.where(ElementType.METHOD).matching(Condition.annotatedWith(Test.class));
+        MetaJava.MetaResult noArguments = SCAN.where(ElementType.METHOD).matching(Condition.parameterCount(0));
+        MetaJava.MetaResult testClasses = SCAN.where(ElementType.TYPE).matching(Condition.nameMatches(".*Condition.*"));
+
+        List<Element> expected = new ArrayList<>();
+        for(Element element : tests.get(ElementType.METHOD)) {
+            MethodElement method = (MethodElement) element;
+            if(method.getParameterCount() == 0 && !method.getDeclaringClass().getClassName().contains("Condition")) {
+                expected.add(method);
+            }
+        }
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, tests.subtract(testClasses).intersect(noArguments).get(ElementType.METHOD));
+        assertEquals(tests.count(), tests.intersect(testClasses).union(tests.subtract(testClasses)).count());
+    }
+
+    @Test
+    public void annotationResultsCanNotBeCombined() {
+        MetaJava.MetaResult types = SCAN.where(ElementType.TYPE).matching(Condition.inPackage(SCANNED_PACKAGE));
+        MetaJava.MetaResult annotations = SCAN.where(ElementType.ANNOTATION)
+                                              .matching(Condition.annotatedWith(Test.class));
+        try {
+            types.union(annotations);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Annotation results can not be combined", e.getMessage());
+        }
+    }
+
+    @Test
+    public void resultsOfDifferentScansCanNotBeCombined() {
+        MetaJava other = MetaJava.scanClassPath(SCANNED_PACKAGE + ".support", false);
+        MetaJava.MetaResult types = SCAN.where(ElementType.TYPE).matching(Condition.inPackage(SCANNED_PACKAGE));
+        MetaJava.MetaResult otherTypes = other.where(ElementType.TYPE).matching(Condition.inPackage(SCANNED_PACKAGE));
+        try {
+            types.intersect(otherTypes);
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Results belong to different scans", e.getMessage());
+        }
+    }
+
+    private static List<Query> getQueries() {
+        return Arrays.asList(
+            new Query(ElementType.TYPE, Condition.inPackage(SCANNED_PACKAGE + ".support")),
+            new Query(ElementType.TYPE, Condition.annotatedWith(TestAnnotation.class)),
+            new Query(ElementType.METHOD, Condition.annotatedWith(Test.class)),
+            new Query(ElementType.METHOD, Condition.nameMatches("get.*")),
+            new Query(ElementType.CONSTRUCTOR, Condition.parameterCount(0).negate()),
+            new Query(ElementType.FIELD, Condition.withModifiers(Modifier.STATIC)),
+            new Query(ElementType.PARAMETER, Condition.hasParameterType(String.class)));
+    }
+
+    /**
+     * Relates elements to another type by following declarations in either direction: types to their members and
+     * their members' parameters, methods and constructors to their parameters, and each of those back to the
+     * elements declaring them.
+     */
+    private static List<Element> getRelated(List<Element> elements, ElementType targetType) {
+        Set<Element> sources = new HashSet<>(elements);
+        List<Element> related = new ArrayList<>();
+        for(Element target : getAll(targetType)) {
+            boolean found = false;
+            for(Element declaration : getDeclarations(target)) {
+                found |= sources.contains(declaration);
+            }
+            for(Element source : elements) {
+                if(found) break;
+                found = getDeclarations(source).contains(target);
+            }
+            if(found) related.add(target);
+        }
+        return related;
+    }
+
+    /**
+     * Gets an element followed by the elements which declare it.
+     */
+    private static List<Element> getDeclarations(Element element) {
+        List<Element> declarations = new ArrayList<>();
+        declarations.add(element);
+        if(element instanceof ParameterElement) {
+            element = ((ParameterElement) element).getDeclaringMethod();
+            declarations.add(element);
+        }
+        if(element instanceof MethodElement) declarations.add(((MethodElement) element).getDeclaringClass());
+        if(element instanceof FieldElement) declarations.add(((FieldElement) element).getDeclaringClass());
+        return declarations;
+    }
+
+    private static List<Element> getAll(ElementType type) {
+        ElementIndex index = SCAN.getIndex();
+        List<Element> elements = new ArrayList<>();
+        for(int id=0; id < index.size(type); id++) {
+            elements.add(index.get(type, id));
+        }
+        return elements;
+    }
+
+    private static final class Query {
+        private final ElementType type;
+        private final Condition condition;
+
+        private Query(ElementType type, Condition condition) {
+            this.type = type;
+            this.condition = condition;
+        }
+
+        private MetaJava.MetaResult get() {
+            return SCAN.where(type).matching(condition);
+        }
+    }
+}
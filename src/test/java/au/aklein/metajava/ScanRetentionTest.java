@@ -0,0 +1,79 @@
+package au.aklein.metajava;
+
+import au.aklein.metajava.internal.ClassFileReader;
+import au.aklein.metajava.support.SimpleClass;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that class element builders only retain the element model, and not the structures used while parsing
+ * class files.
+ */
+public class ScanRetentionTest {
+    private static final String SCANNED_PACKAGE = "au.aklein.metajava";
+    private static final int READS = 5;
+    private static final long MAXIMUM_BYTES_PER_BUILDER = 8 * 1024;
+
+    @Test
+    public void builderDoesNotRetainClassData() throws Exception {
+        Path classFile = Paths.get(SimpleClass.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                              .resolve("au/aklein/metajava/support/SimpleClass.class");
+
+        ClassFileReader reader = ClassFileReader.newClassFileReader();
+        assertTrue(reader.readClassFile(classFile, false));
+        ClassElement.ClassElementBuilder builder = reader.generateClassElementBuilder();
+
+        WeakReference<ClassFileReader> readerReference = new WeakReference<>(reader);
+        reader = null;
+        for(int i=0; i < 10 && readerReference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(readerReference.get());
+        assertEquals("au/aklein/metajava/support/SimpleClass", builder.construct().getName());
+    }
+
+    @Test
+    public void retainedHeapPerBuilder() throws Exception {
+        URI classes = ClassElement.class.getProtectionDomain().getCodeSource().getLocation().toURI();
+        Path packageDirectory = Paths.get(classes).resolve(SCANNED_PACKAGE.replace('.', '/'));
+        List<Path> classFiles;
+        try(Stream<Path> paths = Files.walk(packageDirectory)) {
+            classFiles = paths.filter(path -> path.toString().endsWith(".class")).collect(Collectors.toList());
+        }
+
+        long before = usedHeap();
+        List<ClassElement.ClassElementBuilder> builders = new ArrayList<>();
+        for(int i=0; i < READS; i++) {
+            for(Path classFile : classFiles) {
+                ClassFileReader reader = ClassFileReader.newClassFileReader();
+                if(reader.readClassFile(classFile, false)) builders.add(reader.generateClassElementBuilder());
+            }
+        }
+        long retained = usedHeap() - before;
+
+        assertTrue(builders.size() > 0);
+        long perBuilder = retained / builders.size();
+        assertTrue("Retained " + perBuilder + " bytes per builder", perBuilder <= MAXIMUM_BYTES_PER_BUILDER);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i=0; i < 5; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
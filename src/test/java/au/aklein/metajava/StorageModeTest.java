@@ -0,0 +1,93 @@
+package au.aklein.metajava;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the storage modes which do not hold one object per member read back the same members as
+ * {@link StorageMode#STANDARD}.
+ */
+public class StorageModeTest {
+    private static final String SCANNED_PACKAGE = "au.aklein.metajava";
+    private static final String MEMBERS = "au/aklein/metajava/support/storage/Members";
+
+    @Test
+    public void compactMembersMatchStandard() {
+        assertSameMembers(StorageMode.COMPACT);
+    }
+
+    @Test
+    public void offHeapMembersMatchStandard() {
+        assertSameMembers(StorageMode.OFF_HEAP);
+    }
+
+    @Test
+    public void compactMembersDecodeTheirDescriptors() {
+        MetaJava scan = MetaJava.scanClassPath(SCANNED_PACKAGE + ".support.storage", false, StorageMode.COMPACT);
+        List<String> signatures = new ArrayList<>();
+        for(MethodElement method : getType(scan, MEMBERS).getMethods()) {
+            signatures.add(method.getName() + method.getSignature());
+        }
+
+        assertTrue(signatures.contains("<init>()V"));
+        assertTrue(signatures.contains("<init>(Ljava/lang/String;[I)V"));
+        assertTrue(signatures.contains("group(Ljava/util/Map;[[Ljava/lang/Object;DZ)Ljava/util/Map;"));
+        assertTrue(signatures.contains("gr\u00f6\u00dfe([L" + MEMBERS + "$Measure;CBSF)V"));
+    }
+
+    private static void assertSameMembers(StorageMode storageMode) {
+        List<String> expected = describe(MetaJava.scanClassPath(SCANNED_PACKAGE, false, StorageMode.STANDARD));
+        List<String> actual = describe(MetaJava.scanClassPath(SCANNED_PACKAGE, false, storageMode));
+
+        assertTrue(expected.size() > 0);
+        assertEquals(expected.size(), actual.size());
+        for(int i=0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    /**
+     * Describes every member of a scan by its name, descriptor, generic signature, modifiers and annotations.
+     */
+    private static List<String> describe(MetaJava scan) {
+        List<String> members = new ArrayList<>();
+        for(ClassElement type : scan.getPackageClasses(SCANNED_PACKAGE, true)) {
+            for(MethodElement method : type.getMethods()) {
+                StringBuilder description = new StringBuilder(type.getName()).append(' ').append(method.getName())
+                        .append(method.getSignature()).append(' ').append(method.getGenericSignature()).append(' ')
+                        .append(method.isStatic()).append(method.isVarArgs()).append(method.isSynthetic())
+                        .append(getNames(method.getAnnotations()));
+                for(ParameterElement parameter : method.getParameters()) {
+                    description.append(' ').append(parameter.getTypeName())
+                               .append(getNames(parameter.getAnnotations()));
+                }
+                members.add(description.toString());
+            }
+            for(FieldElement field : type.getFields()) {
+                members.add(type.getName() + " " + field.getName() + " " + field.getGenericSignature() + " " +
+                            field.isStatic() + field.isFinal() + getNames(field.getAnnotations()));
+            }
+        }
+        return members;
+    }
+
+    private static List<String> getNames(List<? extends Element> annotations) {
+        List<String> names = new ArrayList<>();
+        for(Element annotation : annotations) {
+            names.add(annotation.getName());
+        }
+        return names;
+    }
+
+    private static ClassElement getType(MetaJava scan, String name) {
+        for(ClassElement type : scan.getPackageClasses(SCANNED_PACKAGE, true)) {
+            if(type.getName().equals(name)) return type;
+        }
+        throw new AssertionError("Not scanned: " + name);
+    }
+}
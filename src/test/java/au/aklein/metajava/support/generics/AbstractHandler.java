@@ -0,0 +1,5 @@
+package au.aklein.metajava.support.generics;
+
+public abstract class AbstractHandler<T> implements Handler<T> {
+
+}
@@ -0,0 +1,24 @@
+package au.aklein.metajava.support.generics;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Test class with signatures using inner classes of a parameterized class, wildcards and thrown type variables
+ */
+public class Container<K> {
+
+    private Container<String>.Entry<Integer> entry;
+    private List<? super Number> sink;
+    private List<? extends CharSequence> source;
+
+    public <E extends Exception> void perform() throws E, IOException {
+        //Do things
+    }
+
+    public class Entry<V> {
+        private K key;
+        private V value;
+    }
+
+}
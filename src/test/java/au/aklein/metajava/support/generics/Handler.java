@@ -0,0 +1,7 @@
+package au.aklein.metajava.support.generics;
+
+public interface Handler<T> {
+
+    void handle(T event);
+
+}
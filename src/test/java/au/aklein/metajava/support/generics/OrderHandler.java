@@ -0,0 +1,13 @@
+package au.aklein.metajava.support.generics;
+
+/**
+ * Implements Handler&lt;OrderEvent&gt; only through its generic superclass
+ */
+public class OrderHandler extends AbstractHandler<OrderEvent> {
+
+    @Override
+    public void handle(OrderEvent event) {
+        //Do things
+    }
+
+}
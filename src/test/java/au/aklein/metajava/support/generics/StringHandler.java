@@ -0,0 +1,10 @@
+package au.aklein.metajava.support.generics;
+
+public class StringHandler implements Handler<String> {
+
+    @Override
+    public void handle(String event) {
+        //Do things
+    }
+
+}
@@ -0,0 +1,18 @@
+package au.aklein.metajava.support.local;
+
+public class LocalClassHolder {
+
+    public Class<?> getLocalClass() {
+        class Local {
+
+        }
+        return Local.class;
+    }
+
+    public Class<?> getAnonymousClass() {
+        return new Object() {
+
+        }.getClass();
+    }
+
+}
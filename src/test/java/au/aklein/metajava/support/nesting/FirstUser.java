@@ -0,0 +1,11 @@
+package au.aklein.metajava.support.nesting;
+
+/**
+ * Refers to the nested classes of another class, so they appear in the InnerClasses attribute of this class
+ */
+public class FirstUser {
+
+    private Outer.Shared shared;
+    private Outer.Shared.Deep deep;
+
+}
@@ -0,0 +1,13 @@
+package au.aklein.metajava.support.nesting;
+
+public class Outer {
+
+    public static class Shared {
+
+        public static class Deep {
+
+        }
+
+    }
+
+}
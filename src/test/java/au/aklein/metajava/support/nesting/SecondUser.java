@@ -0,0 +1,9 @@
+package au.aklein.metajava.support.nesting;
+
+public class SecondUser {
+
+    public Outer.Shared getShared() {
+        return null;
+    }
+
+}
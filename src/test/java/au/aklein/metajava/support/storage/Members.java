@@ -0,0 +1,35 @@
+package au.aklein.metajava.support.storage;
+
+import au.aklein.metajava.support.TestAnnotation;
+
+import java.util.List;
+import java.util.Map;
+
+public class Members<T extends Comparable<T>> {
+
+    @TestAnnotation
+    private List<T> values;
+
+    private static final long[][] TABLE = new long[0][];
+
+    private Measure measure;
+
+    public Members() {
+    }
+
+    @TestAnnotation
+    public Members(@TestAnnotation String name, int... sizes) {
+    }
+
+    public <K> Map<K, List<T>> group(Map<K, ? super T> keys, Object[][] rows, double weight, boolean strict) {
+        return null;
+    }
+
+    public void gr\u00f6\u00dfe(@TestAnnotation Measure[] measures, char c, byte b, short s, float f) {
+    }
+
+    public static class Measure {
+
+    }
+
+}